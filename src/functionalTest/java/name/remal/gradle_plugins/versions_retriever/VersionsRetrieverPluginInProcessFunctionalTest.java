@@ -0,0 +1,91 @@
+package name.remal.gradle_plugins.versions_retriever;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import name.remal.gradle_plugins.toolkit.testkit.MinSupportedJavaVersion;
+import name.remal.gradle_plugins.toolkit.testkit.functional.GradleProject;
+import name.remal.gradle_plugins.versions_retriever.git.RetrievePreviousVersionFromGitTag;
+import name.remal.gradle_plugins.versions_retriever.git.RetrievePreviousVersionsOfGitCommits;
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Git tasks that use JGit in the Gradle process: tasks with {@code inProcess = true},
+ * and tasks that share results by the HEAD commit resolved with JGit.
+ */
+@MinSupportedJavaVersion(11)
+@RequiredArgsConstructor
+class VersionsRetrieverPluginInProcessFunctionalTest {
+
+    final GradleProject project;
+
+    @BeforeEach
+    void applyPlugin() {
+        project.forBuildFile(build -> {
+            build.applyPlugin("name.remal.versions-retriever");
+            build.addMavenCentralRepository();
+        });
+    }
+
+    @Test
+    void gitTasksAreExecutedInProcess() {
+        project.forBuildFile(build -> {
+            build.addImport(RetrievePreviousVersionFromGitTag.class.getName());
+            build.addImport(RetrievePreviousVersionsOfGitCommits.class.getName());
+            build.appendBlock("tasks.register('retrieveFromTag', RetrievePreviousVersionFromGitTag)", block -> {
+                block.append("    inProcess = true");
+                block.append("    tagPatterns.set([/ver-(?<version>\\d+)/])");
+            });
+            build.appendBlock("tasks.register('retrieveOfCommits', RetrievePreviousVersionsOfGitCommits)", block -> {
+                block.append("    inProcess = true");
+                block.append("    tagPatterns.set([/ver-(?<version>\\d+)/])");
+                block.append("    revisions.add('HEAD')");
+            });
+            build.registerDefaultTask("retrieveFromTag");
+            build.registerDefaultTask("retrieveOfCommits");
+        });
+
+        project.assertBuildSuccessfully();
+
+        assertThat(project.readTextFile("build/retrieve-from-tag.properties")).isNotNull();
+        assertThat(project.readTextFile("build/retrieve-of-commits.properties")).isNotNull();
+    }
+
+    @Test
+    void tasksWithSameConfigurationShareResult() throws Throwable {
+        try (val git = Git.init().setDirectory(project.getProjectDir()).call()) {
+            val verCommit = git.commit().setMessage("ver-1").setAllowEmpty(true).setSign(false).call();
+            git.tag().setName("ver-1").setObjectId(verCommit).setAnnotated(false).call();
+            git.commit().setMessage("next").setAllowEmpty(true).setSign(false).call();
+        }
+
+        project.forBuildFile(build -> {
+            build.addImport(RetrievePreviousVersionFromGitTag.class.getName());
+            build.appendBlock("tasks.register('retrieveFromTag1', RetrievePreviousVersionFromGitTag)", block -> {
+                block.append("    offline = true");
+                block.append("    tagPatterns.set([/ver-(?<version>\\d+)/])");
+                // if the second task retrieved the version again, it wouldn't find the tag:
+                block.append("    doLast {");
+                block.append("        file('.git/refs/tags/ver-1').delete()");
+                block.append("        file('.git/versions-retriever').deleteDir()");
+                block.append("    }");
+            });
+            build.appendBlock("tasks.register('retrieveFromTag2', RetrievePreviousVersionFromGitTag)", block -> {
+                block.append("    offline = true");
+                block.append("    tagPatterns.set([/ver-(?<version>\\d+)/])");
+                block.append("    mustRunAfter('retrieveFromTag1')");
+            });
+            build.registerDefaultTask("retrieveFromTag1");
+            build.registerDefaultTask("retrieveFromTag2");
+        });
+
+        project.assertBuildSuccessfully();
+
+        assertThat(project.readTextFile("build/retrieve-from-tag1.properties")).contains("version=1");
+        assertThat(project.readTextFile("build/retrieve-from-tag2.properties")).contains("version=1");
+    }
+
+}
@@ -0,0 +1,199 @@
+package name.remal.gradle_plugins.versions_retriever;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.ROOT;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+import static javax.servlet.http.HttpServletResponse.SC_UNAUTHORIZED;
+import static name.remal.gradle_plugins.toolkit.ObjectUtils.defaultValue;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.Base64;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import name.remal.gradle_plugins.toolkit.testkit.MinSupportedJavaVersion;
+import name.remal.gradle_plugins.toolkit.testkit.functional.GradleProject;
+import name.remal.gradle_plugins.versions_retriever.maven.RetrieveVersionsFromMaven;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Maven repositories of the project are mapped to repositories of the Maven retrieval tasks, with credentials.
+ * The test Maven repository requires {@code user}/{@code secret} credentials.
+ */
+@MinSupportedJavaVersion(11)
+@RequiredArgsConstructor
+class VersionsRetrieverPluginMavenFunctionalTest {
+
+    static final String METADATA_PATH = "/repo/test/group/test-name/maven-metadata.xml";
+
+    static final String METADATA = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<metadata>\n"
+        + "  <groupId>test.group</groupId>\n"
+        + "  <artifactId>test-name</artifactId>\n"
+        + "  <versioning>\n"
+        + "    <versions>\n"
+        + "      <version>1.0</version>\n"
+        + "      <version>2.0</version>\n"
+        + "    </versions>\n"
+        + "  </versioning>\n"
+        + "</metadata>\n";
+
+    static final String AUTHORIZATION = "Basic " + Base64.getEncoder().encodeToString("user:secret".getBytes(UTF_8));
+
+
+    final GradleProject project;
+
+    Server server;
+    String serverHost;
+    int serverPort;
+
+    @BeforeEach
+    void beforeEach() throws Throwable {
+        server = new Server();
+
+        val connector = new ServerConnector(server);
+        connector.setHost("localhost");
+        connector.setPort(0);
+        server.addConnector(connector);
+
+        val handler = new ServletHandler();
+        handler.addServletWithMapping(new ServletHolder(new RepositoryServlet()), "/*");
+        server.setHandler(handler);
+
+        server.start();
+
+        serverHost = defaultValue(connector.getHost(), "localhost");
+        serverPort = connector.getLocalPort();
+
+        project.forBuildFile(build -> {
+            build.applyPlugin("name.remal.versions-retriever");
+            build.addImport(RetrieveVersionsFromMaven.class.getName());
+            build.registerDefaultTask("retrieveFromMaven");
+        });
+    }
+
+    @AfterEach
+    void afterEach() throws Throwable {
+        server.stop();
+    }
+
+    @Test
+    void projectRepositoryCredentialsAreUsed() {
+        project.forBuildFile(build -> {
+            build.appendBlock("repositories", block -> {
+                block.append("    maven {");
+                block.append(format("        url = 'http://%s:%d/repo'", serverHost, serverPort));
+                block.append("        allowInsecureProtocol = true");
+                block.append("        credentials {");
+                block.append("            username = 'user'");
+                block.append("            password = 'secret'");
+                block.append("        }");
+                block.append("    }");
+            });
+            build.appendBlock("tasks.register('retrieveFromMaven', RetrieveVersionsFromMaven)", block -> {
+                block.append("    dependency.set('test.group:test-name')");
+            });
+        });
+
+        project.assertBuildSuccessfully();
+
+        String content = project.readTextFile("build/retrieve-from-maven.properties");
+        assertThat(content).contains("version=2.0");
+    }
+
+    @Test
+    void taskRepositoryTakesPrecedenceOverProjectRepository() {
+        project.forBuildFile(build -> {
+            build.appendBlock("repositories", block -> {
+                block.append("    maven {");
+                block.append(format("        url = 'http://%s:%d/repo'", serverHost, serverPort));
+                block.append("        allowInsecureProtocol = true");
+                block.append("        credentials {");
+                block.append("            username = 'user'");
+                block.append("            password = 'wrong'");
+                block.append("        }");
+                block.append("    }");
+            });
+            build.appendBlock("tasks.register('retrieveFromMaven', RetrieveVersionsFromMaven)", block -> {
+                block.append("    dependency.set('test.group:test-name')");
+                block.append("    repositories {");
+                block.append("        maven {");
+                block.append(format("            uri.set('http://%s:%d/repo/')", serverHost, serverPort));
+                block.append("            username.set('user')");
+                block.append("            password.set('secret')");
+                block.append("        }");
+                block.append("    }");
+            });
+        });
+
+        project.assertBuildSuccessfully();
+
+        String content = project.readTextFile("build/retrieve-from-maven.properties");
+        assertThat(content).contains("version=2.0");
+    }
+
+    @Test
+    void lastDuplicateRepositoryWins() {
+        project.forBuildFile(build -> {
+            build.appendBlock("tasks.register('retrieveFromMaven', RetrieveVersionsFromMaven)", block -> {
+                block.append("    dependency.set('test.group:test-name')");
+                block.append("    repositories {");
+                block.append("        maven {");
+                block.append(format("            uri.set('http://%s:%d/repo')", serverHost, serverPort));
+                block.append("            username.set('user')");
+                block.append("            password.set('wrong')");
+                block.append("        }");
+                block.append("        maven {");
+                // the same repository, spelled differently:
+                block.append(format(
+                    "            uri.set('HTTP://%s:%d//repo/')",
+                    serverHost.toUpperCase(ROOT),
+                    serverPort
+                ));
+                block.append("            username.set('user')");
+                block.append("            password.set('secret')");
+                block.append("        }");
+                block.append("    }");
+            });
+        });
+
+        project.assertBuildSuccessfully();
+
+        String content = project.readTextFile("build/retrieve-from-maven.properties");
+        assertThat(content).contains("version=2.0");
+    }
+
+
+    static class RepositoryServlet extends HttpServlet {
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            if (!AUTHORIZATION.equals(request.getHeader("Authorization"))) {
+                response.setStatus(SC_UNAUTHORIZED);
+                return;
+            }
+
+            if (!METADATA_PATH.equals(request.getRequestURI())) {
+                response.setStatus(SC_NOT_FOUND);
+                return;
+            }
+
+            response.setStatus(SC_OK);
+            response.setContentType("application/xml");
+            response.getOutputStream().write(METADATA.getBytes(UTF_8));
+        }
+
+    }
+
+}
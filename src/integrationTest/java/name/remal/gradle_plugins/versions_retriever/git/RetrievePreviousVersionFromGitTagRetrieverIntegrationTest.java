@@ -1,19 +1,43 @@
 package name.remal.gradle_plugins.versions_retriever.git;
 
 import static java.lang.String.format;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.list;
+import static java.nio.file.Files.readAllBytes;
 import static java.nio.file.Files.write;
+import static java.time.ZoneOffset.UTC;
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.SECONDS;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
 import static name.remal.gradle_plugins.toolkit.ObjectUtils.defaultValue;
 import static name.remal.gradle_plugins.toolkit.PathUtils.deleteRecursively;
+import static name.remal.gradle_plugins.toolkit.PropertiesUtils.loadProperties;
+import static name.remal.gradle_plugins.toolkit.PropertiesUtils.storeProperties;
 import static name.remal.gradle_plugins.versions_retriever.Assertions.assertThat;
 import static org.eclipse.jgit.api.MergeCommand.FastForwardMode.NO_FF;
 import static org.eclipse.jgit.lib.Constants.R_HEADS;
+import static org.eclipse.jgit.lib.Constants.R_TAGS;
 import static org.eclipse.jgit.lib.Repository.shortenRefName;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.google.common.collect.ImmutableSet;
 import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
+import java.util.stream.StreamSupport;
 import javax.annotation.Nullable;
 import lombok.SneakyThrows;
 import lombok.val;
@@ -26,6 +50,8 @@ import org.eclipse.jetty.servlet.ServletHolder;
 import org.eclipse.jgit.api.CloneCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.http.server.GitServlet;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
@@ -146,6 +172,213 @@ class RetrievePreviousVersionFromGitTagRetrieverIntegrationTest {
             .hasGitTag("ver-2");
     }
 
+    @Test
+    void nonVersionTagsAreNotFetched() throws Throwable {
+        val verCommit1 = new AtomicReference<RevCommit>();
+        withServerRepository(git -> {
+            verCommit1.set(addSimpleCommit(git));
+            addSimpleCommit(git);
+        });
+
+        cloneRepository();
+
+        // add tags after clone:
+        withServerRepository(git -> {
+            addTag(git, verCommit1.get(), "ver-1");
+            addTag(git, verCommit1.get(), "build-1");
+        });
+
+        val refVersion = retriever.retrieve(repositoryPath);
+
+        assertNotNull(refVersion);
+        assertThat(refVersion)
+            .hasVersion("1")
+            .hasGitTag("ver-1");
+
+        try (val repository = FileRepositoryBuilder.create(repositoryPath.resolve(".git").toFile())) {
+            assertNotNull(repository.getRefDatabase().exactRef(R_TAGS + "ver-1"));
+            assertNull(repository.getRefDatabase().exactRef(R_TAGS + "build-1"));
+        }
+    }
+
+    @Test
+    void newTagsAfterPreviousRetrieval() {
+        val verCommit1 = new AtomicReference<RevCommit>();
+        val verCommit2 = new AtomicReference<RevCommit>();
+        withServerRepository(git -> {
+            verCommit1.set(addSimpleCommit(git, "ver-1"));
+            verCommit2.set(addSimpleCommit(git));
+            addSimpleCommit(git);
+        });
+
+        cloneRepository();
+
+        val refVersion1 = retriever.retrieve(repositoryPath);
+
+        assertNotNull(refVersion1);
+        assertThat(refVersion1)
+            .hasVersion("1")
+            .hasGitCommitHash(verCommit1.get().getId().getName())
+            .hasGitTag("ver-1");
+
+        withServerRepository(git -> {
+            addTag(git, verCommit2.get(), "ver-2");
+        });
+
+        val refVersion2 = retriever.retrieve(repositoryPath);
+
+        assertNotNull(refVersion2);
+        assertThat(refVersion2)
+            .hasVersion("2")
+            .hasGitCommitHash(verCommit2.get().getId().getName())
+            .hasGitTag("ver-2");
+    }
+
+    @Test
+    void offlineUsesLocalTagsOnly() throws Throwable {
+        val verCommit1 = new AtomicReference<RevCommit>();
+        val verCommit2 = new AtomicReference<RevCommit>();
+        withServerRepository(git -> {
+            verCommit1.set(addSimpleCommit(git, "ver-1"));
+            verCommit2.set(addSimpleCommit(git));
+            addSimpleCommit(git);
+        });
+
+        cloneRepository();
+
+        withServerRepository(git -> {
+            addTag(git, verCommit2.get(), "ver-2");
+        });
+        server.stop();
+
+        val refVersion = RetrievePreviousVersionFromGitTagRetriever.builder()
+            .tagPattern(Pattern.compile("ver-(?<version>\\d+)"))
+            .offline(true)
+            .build()
+            .retrieve(repositoryPath);
+
+        assertNotNull(refVersion);
+        assertThat(refVersion)
+            .hasVersion("1")
+            .hasGitCommitHash(verCommit1.get().getId().getName())
+            .hasGitTag("ver-1");
+    }
+
+    @Test
+    void offlineShallowCloneIsNotDeepened() throws Throwable {
+        withServerRepository(git -> {
+            addSimpleCommit(git, "ver-1");
+            addSimpleCommit(git);
+            addSimpleCommit(git);
+        });
+
+        cloneRepositoryPartially(1);
+        server.stop();
+
+        val refVersion = RetrievePreviousVersionFromGitTagRetriever.builder()
+            .tagPattern(Pattern.compile("ver-(?<version>\\d+)"))
+            .offline(true)
+            .build()
+            .retrieve(repositoryPath);
+
+        assertNull(refVersion);
+    }
+
+    @Test
+    void movedTagsAreForceUpdated() throws Throwable {
+        val verCommit1 = new AtomicReference<RevCommit>();
+        val commitAfter1 = new AtomicReference<RevCommit>();
+        withServerRepository(git -> {
+            verCommit1.set(addSimpleCommit(git, "ver-1"));
+            commitAfter1.set(addSimpleCommit(git));
+            addSimpleCommit(git);
+        });
+
+        cloneRepository();
+
+        // move the tag to a descendant commit, it's a non-fast-forward update of an annotated tag:
+        withServerRepository(git -> {
+            git.tag().setObjectId(commitAfter1.get()).setName("ver-1").setForceUpdate(true).call();
+        });
+
+        val refVersion = retriever.retrieve(repositoryPath);
+
+        assertNotNull(refVersion);
+        assertThat(refVersion)
+            .hasVersion("1")
+            .hasGitCommitHash(commitAfter1.get().getId().getName())
+            .hasGitTag("ver-1");
+
+        try (val repository = FileRepositoryBuilder.create(repositoryPath.resolve(".git").toFile())) {
+            val localTagRef = repository.getRefDatabase().peel(
+                repository.getRefDatabase().exactRef(R_TAGS + "ver-1")
+            );
+            val localTagCommitId = localTagRef.getPeeledObjectId() != null
+                ? localTagRef.getPeeledObjectId()
+                : localTagRef.getObjectId();
+            assertEquals(commitAfter1.get().getId(), localTagCommitId);
+        }
+    }
+
+    @Test
+    void persistentIndexIsUsedForNewLocalCommits() throws Throwable {
+        val verCommit1 = new AtomicReference<RevCommit>();
+        withServerRepository(git -> {
+            verCommit1.set(addSimpleCommit(git, "ver-1"));
+            addSimpleCommit(git);
+        });
+
+        cloneRepository();
+
+        val refVersion1 = retriever.retrieve(repositoryPath);
+
+        assertNotNull(refVersion1);
+        assertThat(refVersion1)
+            .hasVersion("1")
+            .hasGitCommitHash(verCommit1.get().getId().getName())
+            .hasGitTag("ver-1");
+
+        val indexDir = repositoryPath.resolve(".git/versions-retriever/commit-version-index");
+        assertTrue(isDirectory(indexDir));
+
+        // replace indexed versions, so it's visible whether the walk stops at the indexed commit:
+        try (val indexFiles = list(indexDir)) {
+            for (val indexFile : indexFiles.collect(toList())) {
+                val properties = loadProperties(indexFile);
+                for (val key : properties.stringPropertyNames()) {
+                    if (key.endsWith(".version")) {
+                        properties.setProperty(key, "7");
+                    }
+                }
+                storeProperties(properties, indexFile);
+            }
+        }
+
+        try (val git = Git.open(repositoryPath.toFile())) {
+            git.commit().setMessage("Local").setAllowEmpty(true).setNoVerify(true).call();
+        }
+
+        val refVersion2 = retriever.retrieve(repositoryPath);
+
+        assertNotNull(refVersion2);
+        assertThat(refVersion2)
+            .hasVersion("7")
+            .hasGitCommitHash(verCommit1.get().getId().getName())
+            .hasGitTag("ver-1");
+
+        val refVersionWithoutIndex = RetrievePreviousVersionFromGitTagRetriever.builder()
+            .tagPattern(Pattern.compile("ver-(?<version>\\d+)"))
+            .usePersistentIndex(false)
+            .build()
+            .retrieve(repositoryPath);
+
+        assertNotNull(refVersionWithoutIndex);
+        assertThat(refVersionWithoutIndex)
+            .hasVersion("1")
+            .hasGitCommitHash(verCommit1.get().getId().getName())
+            .hasGitTag("ver-1");
+    }
+
     @Test
     void shallowClone() {
         val verCommit1 = new AtomicReference<RevCommit>();
@@ -168,6 +401,84 @@ class RetrievePreviousVersionFromGitTagRetrieverIntegrationTest {
             .hasGitTag("ver-2");
     }
 
+    @Test
+    void shallowCloneDeepenedSinceNewestTag() throws Throwable {
+        val verCommit2 = new AtomicReference<RevCommit>();
+        withServerRepository(git -> {
+            addSimpleCommit(git, "ver-1");
+            verCommit2.set(addSimpleCommit(git, "ver-2"));
+            addSimpleCommit(git);
+            addSimpleCommit(git);
+        });
+
+        cloneRepositoryPartially(1);
+
+        val refVersion = RetrievePreviousVersionFromGitTagRetriever.builder()
+            .tagPattern(Pattern.compile("ver-(?<version>\\d+)"))
+            .deepenStrategy(GitDeepenStrategy.SINCE_NEWEST_TAG)
+            .build()
+            .retrieve(repositoryPath);
+
+        assertNotNull(refVersion);
+        assertThat(refVersion)
+            .hasVersion("2")
+            .hasGitCommitHash(verCommit2.get().getId().getName())
+            .hasGitTag("ver-2");
+
+        // commits are fetched since the commit date of ver-2 only, not unshallowed:
+        try (val git = Git.open(repositoryPath.toFile())) {
+            val shallowCommits = git.getRepository().getObjectDatabase().getShallowCommits();
+            assertEquals(ImmutableSet.of(verCommit2.get().getId()), shallowCommits);
+
+            val headCommitsCount = StreamSupport.stream(git.log().call().spliterator(), false).count();
+            assertEquals(3, headCommitsCount);
+        }
+    }
+
+    @Test
+    void shallowCloneResolvedByRefAdvertisement() throws Throwable {
+        val verCommit1 = new AtomicReference<RevCommit>();
+        val verCommit2 = new AtomicReference<RevCommit>();
+        withServerRepository(git -> {
+            verCommit1.set(addSimpleCommit(git, "ver-1"));
+            verCommit2.set(addSimpleCommit(git, "ver-2"));
+            addSimpleCommit(git);
+            addSimpleCommit(git);
+        });
+
+        cloneRepositoryPartially(3);
+
+        val shallowFile = repositoryPath.resolve(".git/shallow");
+        val shallowFileContentBefore = readAllBytes(shallowFile);
+        val tagRefsBefore = getLocalTagRefs();
+
+        val refVersion = retriever.retrieve(repositoryPath);
+
+        assertNotNull(refVersion);
+        assertThat(refVersion)
+            .hasVersion("2")
+            .hasGitCommitHash(verCommit2.get().getId().getName())
+            .hasGitTag("ver-2");
+
+        // nothing is fetched:
+        assertArrayEquals(shallowFileContentBefore, readAllBytes(shallowFile));
+        assertEquals(tagRefsBefore, getLocalTagRefs());
+        try (val repository = FileRepositoryBuilder.create(repositoryPath.resolve(".git").toFile())) {
+            assertFalse(repository.getObjectDatabase().has(verCommit1.get()));
+        }
+    }
+
+    @SneakyThrows
+    Map<String, ObjectId> getLocalTagRefs() {
+        val tagRefs = new LinkedHashMap<String, ObjectId>();
+        try (val repository = FileRepositoryBuilder.create(repositoryPath.resolve(".git").toFile())) {
+            for (val tagRef : repository.getRefDatabase().getRefsByPrefix(R_TAGS)) {
+                tagRefs.put(tagRef.getName(), tagRef.getObjectId());
+            }
+        }
+        return tagRefs;
+    }
+
     @Test
     void currentCommitIsSkipped() {
         val verCommit1 = new AtomicReference<RevCommit>();
@@ -188,6 +499,265 @@ class RetrievePreviousVersionFromGitTagRetrieverIntegrationTest {
             .hasGitTag("ver-1");
     }
 
+    @Test
+    void previousVersionsOfCommitsRange() {
+        val firstCommit = new AtomicReference<RevCommit>();
+        val verCommit1 = new AtomicReference<RevCommit>();
+        val commitAfter1 = new AtomicReference<RevCommit>();
+        val verCommit2 = new AtomicReference<RevCommit>();
+        val commitAfter2 = new AtomicReference<RevCommit>();
+        withServerRepository(git -> {
+            firstCommit.set(addSimpleCommit(git));
+            verCommit1.set(addSimpleCommit(git, "ver-1"));
+            commitAfter1.set(addSimpleCommit(git));
+            verCommit2.set(addSimpleCommit(git, "ver-2"));
+            commitAfter2.set(addSimpleCommit(git));
+        });
+
+        cloneRepositoryPartially(1);
+
+        val versions = retriever.retrievePreviousVersions(
+            repositoryPath,
+            singletonList(firstCommit.get().getId().getName() + "..HEAD")
+        );
+
+        assertEquals(
+            ImmutableSet.of(
+                commitAfter1.get().getId().getName(),
+                verCommit2.get().getId().getName(),
+                commitAfter2.get().getId().getName()
+            ),
+            versions.keySet()
+        );
+        assertThat(versions.get(commitAfter1.get().getId().getName()))
+            .hasVersion("1")
+            .hasGitTag("ver-1");
+        assertThat(versions.get(verCommit2.get().getId().getName()))
+            .hasVersion("1")
+            .hasGitTag("ver-1");
+        assertThat(versions.get(commitAfter2.get().getId().getName()))
+            .hasVersion("2")
+            .hasGitCommitHash(verCommit2.get().getId().getName())
+            .hasGitTag("ver-2");
+    }
+
+    @Test
+    void previousVersionsOfMergeCommitsPre3Feature1Post2() {
+        withServerRepository(git -> {
+            addSimpleCommit(git, "ver-3");
+
+            checkout(git, "feature");
+            addSimpleCommit(git);
+            addSimpleCommit(git, "ver-1");
+            val lastFeatureCommit = addSimpleCommit(git);
+
+            checkout(git, serverRepositoryDefaultBranch);
+            addSimpleCommit(git, "ver-2");
+            git.merge().include(lastFeatureCommit).setFastForward(NO_FF).setCommit(true).call();
+            addSimpleCommit(git);
+        });
+
+        cloneRepository();
+
+        assertPreviousVersionsOfAllCommitsMatchRetrieve();
+    }
+
+    @Test
+    void previousVersionsOfShallowCloneStopDeepeningOnceResolved() throws Throwable {
+        val verCommit2 = new AtomicReference<RevCommit>();
+        withServerRepository(git -> {
+            addSimpleCommit(git);
+            addSimpleCommit(git, "ver-1");
+            addSimpleCommit(git);
+            verCommit2.set(addSimpleCommit(git, "ver-2"));
+            addSimpleCommit(git);
+        });
+
+        cloneRepositoryPartially(1);
+
+        val versions = RetrievePreviousVersionFromGitTagRetriever.builder()
+            .tagPattern(Pattern.compile("ver-(?<version>\\d+)"))
+            .deepenStrategy(GitDeepenStrategy.FIXED)
+            .initialDeepenDepth(2)
+            .build()
+            .retrievePreviousVersions(repositoryPath, singletonList("HEAD"));
+
+        assertEquals(1, versions.size(), versions::toString);
+        assertThat(versions.values().iterator().next())
+            .hasVersion("2")
+            .hasGitCommitHash(verCommit2.get().getId().getName())
+            .hasGitTag("ver-2");
+
+        // the first deepen resolves the previous version, so the repository isn't unshallowed:
+        try (val repository = FileRepositoryBuilder.create(repositoryPath.resolve(".git").toFile())) {
+            assertEquals(
+                ImmutableSet.of(verCommit2.get().getId()),
+                repository.getObjectDatabase().getShallowCommits()
+            );
+        }
+    }
+
+    /**
+     * Previous versions of all commits retrieved at once must be the same
+     * as versions retrieved for every commit separately.
+     */
+    @SneakyThrows
+    void assertPreviousVersionsOfAllCommitsMatchRetrieve() {
+        List<String> commitIds = new ArrayList<>();
+        try (val git = Git.open(repositoryPath.toFile())) {
+            for (val commit : git.log().call()) {
+                commitIds.add(commit.getName());
+            }
+        }
+
+        val versions = retriever.retrievePreviousVersions(repositoryPath, commitIds);
+
+        for (val commitId : commitIds) {
+            try (val git = Git.open(repositoryPath.toFile())) {
+                git.checkout().setName(commitId).call();
+            }
+            val refVersion = retriever.retrieve(repositoryPath);
+            assertEquals(refVersion, versions.get(commitId), commitId);
+        }
+    }
+
+    @Test
+    void previousVersionsByNamedPatterns() {
+        val apiCommit1 = new AtomicReference<RevCommit>();
+        val webCommit2 = new AtomicReference<RevCommit>();
+        withServerRepository(git -> {
+            apiCommit1.set(addSimpleCommit(git, "api-1"));
+            addSimpleCommit(git, "web-1");
+            webCommit2.set(addSimpleCommit(git, "web-2"));
+            addSimpleCommit(git);
+        });
+
+        cloneRepository();
+
+        val namedPatterns = getNamedPatterns();
+        val namedRetriever = RetrievePreviousVersionFromGitTagRetriever.builder()
+            .tagPatterns(namedPatterns.values())
+            .build();
+
+        val versions = namedRetriever.retrieveByNamedPatterns(repositoryPath, namedPatterns);
+
+        assertEquals(ImmutableSet.of("api", "web"), versions.keySet());
+        assertThat(versions.get("api"))
+            .hasVersion("1")
+            .hasGitCommitHash(apiCommit1.get().getId().getName())
+            .hasGitTag("api-1");
+        assertThat(versions.get("web"))
+            .hasVersion("2")
+            .hasGitCommitHash(webCommit2.get().getId().getName())
+            .hasGitTag("web-2");
+    }
+
+    @Test
+    void previousVersionsByNamedPatternsOfMergeCommits() {
+        withServerRepository(git -> {
+            val rootCommit = addSimpleCommit(git, "api-3");
+            addTag(git, rootCommit, "web-3");
+
+            checkout(git, "feature");
+            addSimpleCommit(git);
+            val featureCommit = addSimpleCommit(git, "api-1");
+            addTag(git, featureCommit, "web-2");
+            val lastFeatureCommit = addSimpleCommit(git);
+
+            checkout(git, serverRepositoryDefaultBranch);
+            val postCommit = addSimpleCommit(git, "api-2");
+            addTag(git, postCommit, "web-1");
+            git.merge().include(lastFeatureCommit).setFastForward(NO_FF).setCommit(true).call();
+            addSimpleCommit(git);
+        });
+
+        cloneRepository();
+
+        assertNamedVersionsOfAllCommitsMatchRetrieve();
+    }
+
+    @Test
+    void previousVersionsByNamedPatternsOfShallowCloneStopDeepeningOnceResolved() throws Throwable {
+        val webCommit1 = new AtomicReference<RevCommit>();
+        val apiCommit1 = new AtomicReference<RevCommit>();
+        withServerRepository(git -> {
+            addSimpleCommit(git);
+            webCommit1.set(addSimpleCommit(git, "web-1"));
+            apiCommit1.set(addSimpleCommit(git, "api-1"));
+            addSimpleCommit(git);
+            addSimpleCommit(git);
+        });
+
+        cloneRepositoryPartially(1);
+
+        val namedPatterns = getNamedPatterns();
+        val versions = RetrievePreviousVersionFromGitTagRetriever.builder()
+            .tagPatterns(namedPatterns.values())
+            .deepenStrategy(GitDeepenStrategy.EXPONENTIAL)
+            .initialDeepenDepth(2)
+            .build()
+            .retrieveByNamedPatterns(repositoryPath, namedPatterns);
+
+        assertEquals(ImmutableSet.of("api", "web"), versions.keySet());
+        assertThat(versions.get("api"))
+            .hasVersion("1")
+            .hasGitCommitHash(apiCommit1.get().getId().getName());
+        assertThat(versions.get("web"))
+            .hasVersion("1")
+            .hasGitCommitHash(webCommit1.get().getId().getName());
+
+        // the pattern without tags doesn't make the repository unshallowed:
+        try (val repository = FileRepositoryBuilder.create(repositoryPath.resolve(".git").toFile())) {
+            assertEquals(
+                ImmutableSet.of(webCommit1.get().getId()),
+                repository.getObjectDatabase().getShallowCommits()
+            );
+        }
+    }
+
+    static Map<String, Pattern> getNamedPatterns() {
+        Map<String, Pattern> namedPatterns = new LinkedHashMap<>();
+        namedPatterns.put("api", Pattern.compile("api-(?<version>\\d+)"));
+        namedPatterns.put("web", Pattern.compile("web-(?<version>\\d+)"));
+        namedPatterns.put("cli", Pattern.compile("cli-(?<version>\\d+)"));
+        return namedPatterns;
+    }
+
+    /**
+     * Versions of all named patterns retrieved at once must be the same
+     * as versions retrieved for every pattern separately, for every commit.
+     */
+    @SneakyThrows
+    void assertNamedVersionsOfAllCommitsMatchRetrieve() {
+        List<String> commitIds = new ArrayList<>();
+        try (val git = Git.open(repositoryPath.toFile())) {
+            for (val commit : git.log().call()) {
+                commitIds.add(commit.getName());
+            }
+        }
+
+        val namedPatterns = getNamedPatterns();
+        val namedRetriever = RetrievePreviousVersionFromGitTagRetriever.builder()
+            .tagPatterns(namedPatterns.values())
+            .build();
+
+        for (val commitId : commitIds) {
+            try (val git = Git.open(repositoryPath.toFile())) {
+                git.checkout().setName(commitId).call();
+            }
+
+            val versions = namedRetriever.retrieveByNamedPatterns(repositoryPath, namedPatterns);
+
+            for (val entry : namedPatterns.entrySet()) {
+                val refVersion = RetrievePreviousVersionFromGitTagRetriever.builder()
+                    .tagPattern(entry.getValue())
+                    .build()
+                    .retrieve(repositoryPath);
+                assertEquals(refVersion, versions.get(entry.getKey()), entry.getKey() + " of " + commitId);
+            }
+        }
+    }
+
     @Test
     void mergeCommitPre1Feature2() {
         val verCommitPre = new AtomicReference<RevCommit>();
@@ -392,6 +962,38 @@ class RetrievePreviousVersionFromGitTagRetrieverIntegrationTest {
             .hasGitTag("ver-2");
     }
 
+    @Test
+    void octopusMergeCommitPre1Feature2Feature3() {
+        val verCommitFeature3 = new AtomicReference<RevCommit>();
+        withServerRepository(git -> {
+            addSimpleCommit(git, "ver-1");
+
+            checkout(git, "feature2");
+            val verCommitFeature2 = addSimpleCommit(git, "ver-2");
+
+            checkout(git, serverRepositoryDefaultBranch);
+            checkout(git, "feature3");
+            verCommitFeature3.set(addSimpleCommit(git, "ver-3"));
+
+            checkout(git, serverRepositoryDefaultBranch);
+            addSimpleCommit(git);
+            git.getRepository().writeMergeHeads(asList(verCommitFeature2, verCommitFeature3.get()));
+            val octopusMergeCommit = git.commit().setMessage("Octopus merge").setNoVerify(true).call();
+            assertEquals(3, octopusMergeCommit.getParentCount());
+            addSimpleCommit(git);
+        });
+
+        cloneRepository();
+
+        val refVersion = retriever.retrieve(repositoryPath);
+
+        assertNotNull(refVersion);
+        assertThat(refVersion)
+            .hasVersion("3")
+            .hasGitCommitHash(verCommitFeature3.get().getId().getName())
+            .hasGitTag("ver-3");
+    }
+
 
     @SneakyThrows
     void withServerRepository(SneakyThrowsConsumer<Git> action) {
@@ -404,6 +1006,8 @@ class RetrievePreviousVersionFromGitTagRetrieverIntegrationTest {
     }
 
 
+    static final Instant SIMPLE_COMMITS_START = Instant.now().minus(1, DAYS).truncatedTo(SECONDS);
+
     final AtomicInteger simpleCommitsInServerRepository = new AtomicInteger();
 
     RevCommit addSimpleCommit(Git git, String tagName) {
@@ -412,12 +1016,21 @@ class RetrievePreviousVersionFromGitTagRetrieverIntegrationTest {
         return commit;
     }
 
+    /**
+     * Simple commits have distinct commit times, one minute apart, so fetches since a commit date are predictable.
+     */
     @SneakyThrows
     RevCommit addSimpleCommit(Git git) {
         val number = simpleCommitsInServerRepository.incrementAndGet();
         write(serverRepositoryPath.resolve("simple-" + number), new byte[0]);
         git.add().addFilepattern("*").call();
-        return git.commit().setMessage("Simple " + number).setNoVerify(true).call();
+        val ident = new PersonIdent("Test", "test@example.com", SIMPLE_COMMITS_START.plusSeconds(60L * number), UTC);
+        return git.commit()
+            .setMessage("Simple " + number)
+            .setAuthor(ident)
+            .setCommitter(ident)
+            .setNoVerify(true)
+            .call();
     }
 
     @SneakyThrows
@@ -456,9 +1069,16 @@ class RetrievePreviousVersionFromGitTagRetrieverIntegrationTest {
         }
         try (val git = clone.call()) {
             configureRepositoryConfig(git.getRepository());
+            if (depth == null) {
+                afterFullClone(git);
+            }
         }
     }
 
+    void afterFullClone(Git git) {
+        // do nothing by default
+    }
+
     static void configureRepositoryConfig(Repository repository) {
         val config = repository.getConfig();
         config.setString("user", null, "name", "Test");
@@ -0,0 +1,36 @@
+package name.remal.gradle_plugins.versions_retriever.git;
+
+import static java.nio.file.Files.isRegularFile;
+import static org.eclipse.jgit.lib.ConfigConstants.CONFIG_COMMIT_GRAPH;
+import static org.eclipse.jgit.lib.ConfigConstants.CONFIG_CORE_SECTION;
+import static org.eclipse.jgit.lib.ConfigConstants.CONFIG_GC_SECTION;
+import static org.eclipse.jgit.lib.ConfigConstants.CONFIG_KEY_WRITE_COMMIT_GRAPH;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import name.remal.gradle_plugins.toolkit.testkit.MinSupportedJavaVersion;
+import org.eclipse.jgit.api.Git;
+
+/**
+ * Runs all tests on full clones with a commit-graph file written by {@code gc},
+ * so graph positions, generation pruning and early stopping of the tag walk are used.
+ */
+@MinSupportedJavaVersion(11)
+class RetrievePreviousVersionFromGitTagRetrieverWithCommitGraphIntegrationTest
+    extends RetrievePreviousVersionFromGitTagRetrieverIntegrationTest {
+
+    @Override
+    @SneakyThrows
+    void afterFullClone(Git git) {
+        val config = git.getRepository().getConfig();
+        config.setBoolean(CONFIG_CORE_SECTION, null, CONFIG_COMMIT_GRAPH, true);
+        config.setBoolean(CONFIG_GC_SECTION, null, CONFIG_KEY_WRITE_COMMIT_GRAPH, true);
+        config.save();
+
+        git.gc().call();
+
+        assertTrue(isRegularFile(git.getRepository().getDirectory().toPath().resolve("objects/info/commit-graph")));
+    }
+
+}
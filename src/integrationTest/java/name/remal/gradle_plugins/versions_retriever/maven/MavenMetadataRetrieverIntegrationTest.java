@@ -0,0 +1,477 @@
+package name.remal.gradle_plugins.versions_retriever.maven;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.list;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+import static name.remal.gradle_plugins.toolkit.ObjectUtils.defaultValue;
+import static name.remal.gradle_plugins.versions_retriever.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import lombok.val;
+import name.remal.gradle_plugins.toolkit.testkit.MinSupportedJavaVersion;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@MinSupportedJavaVersion(11)
+class MavenMetadataRetrieverIntegrationTest {
+
+    static final MavenDependency DEPENDENCY = new MavenDependency("test.group", "test-name");
+
+    final RepositoryServlet servlet = new RepositoryServlet();
+
+    Server server;
+    String serverHost;
+    int serverPort;
+
+    @BeforeEach
+    void beforeEach() throws Throwable {
+        server = new Server();
+
+        val connector = new ServerConnector(server);
+        connector.setHost("localhost");
+        connector.setPort(0);
+        server.addConnector(connector);
+
+        val handler = new ServletHandler();
+        handler.addServletWithMapping(new ServletHolder(servlet), "/*");
+        server.setHandler(handler);
+
+        server.start();
+
+        serverHost = defaultValue(connector.getHost(), "localhost");
+        serverPort = connector.getLocalPort();
+    }
+
+    @AfterEach
+    void afterEach() throws Throwable {
+        server.stop();
+    }
+
+    @Test
+    void maxVersionOfAllRepositories() {
+        addMetadata("repo1", DEPENDENCY, "1.0", "2.0");
+        addMetadata("repo2", DEPENDENCY, "1.5", "3.0");
+
+        val version = MavenMetadataRetriever.builder()
+            .repository(repository("repo1").build())
+            .repository(repository("repo2").build())
+            .build()
+            .retrieve(DEPENDENCY);
+
+        assertNotNull(version);
+        assertThat(version)
+            .hasVersion("3.0")
+            .hasMavenSnapshotVersion(null);
+    }
+
+    @Test
+    void repositoryWithInvalidMetadataIsSkipped() {
+        servlet.files.put("/repo1/" + DEPENDENCY.getMetadataPath(), "<html>not a metadata</p>");
+        addMetadata("repo2", DEPENDENCY, "1.0", "2.0");
+
+        val version = MavenMetadataRetriever.builder()
+            .repository(repository("repo1").build())
+            .repository(repository("repo2").build())
+            .build()
+            .retrieve(DEPENDENCY);
+
+        assertNotNull(version);
+        assertThat(version).hasVersion("2.0");
+        assertEquals(asList(SC_OK, SC_OK), servlet.responseStatuses);
+    }
+
+    @Test
+    void notModifiedMetadataIsReadFromCache(@TempDir Path cacheDir) throws Throwable {
+        addMetadata("repo", DEPENDENCY, "1.0", "2.0");
+
+        val client = new MavenMetadataClient(new MavenHttpConnections(), new MavenMetadataCache(cacheDir));
+        val retriever = MavenMetadataRetriever.builder()
+            .repository(repository("repo").build())
+            .client(client)
+            .build();
+
+        val version1 = retriever.retrieve(DEPENDENCY);
+        assertNotNull(version1);
+        assertThat(version1).hasVersion("2.0");
+
+        val version2 = retriever.retrieve(DEPENDENCY);
+        assertNotNull(version2);
+        assertThat(version2).hasVersion("2.0");
+
+        assertEquals(asList(SC_OK, SC_NOT_MODIFIED), servlet.responseStatuses);
+        assertEquals(2, servlet.ifNoneMatchHeaders.size());
+        assertEquals("", servlet.ifNoneMatchHeaders.get(0));
+        assertEquals(servlet.getEtag("/repo/" + DEPENDENCY.getMetadataPath()), servlet.ifNoneMatchHeaders.get(1));
+
+        // only the entry file, temporary files are moved atomically:
+        try (val cacheFiles = list(cacheDir)) {
+            val cacheFileNames = cacheFiles
+                .map(Path::getFileName)
+                .map(Path::toString)
+                .collect(toList());
+            assertEquals(1, cacheFileNames.size(), cacheFileNames::toString);
+            assertTrue(cacheFileNames.get(0).endsWith(".entry"), cacheFileNames::toString);
+        }
+    }
+
+    @Test
+    void failedMirrorIsSkipped() {
+        addMetadata("mirror1", DEPENDENCY, "1.0", "2.0");
+        addMetadata("mirror2", DEPENDENCY, "1.0", "2.0");
+        servlet.failingPaths.add("/mirror1/" + DEPENDENCY.getMetadataPath());
+        servlet.responseDelays.put("/mirror2/" + DEPENDENCY.getMetadataPath(), Duration.ofMillis(500));
+
+        val version = MavenMetadataRetriever.builder()
+            .repository(repository("mirror1").mirror(true).build())
+            .repository(repository("mirror2").mirror(true).build())
+            .hedgeMirrors(true)
+            .build()
+            .retrieve(DEPENDENCY);
+
+        assertNotNull(version);
+        assertThat(version).hasVersion("2.0");
+        assertTrue(servlet.responseStatuses.contains(SC_INTERNAL_SERVER_ERROR), servlet.responseStatuses::toString);
+    }
+
+    @Test
+    void invalidMirrorMetadataFailsOnlyItsOwnRequests() {
+        val dependency1 = new MavenDependency("test.group", "test-name-1");
+        val dependency2 = new MavenDependency("test.group", "test-name-2");
+        servlet.files.put("/mirror1/" + dependency1.getMetadataPath(), "not a metadata");
+        addMetadata("mirror1", dependency2, "1.0");
+        addMetadata("mirror2", dependency1, "2.0");
+        addMetadata("mirror2", dependency2, "1.0");
+        servlet.responseDelays.put("/mirror2/" + dependency1.getMetadataPath(), Duration.ofMillis(500));
+        servlet.responseDelays.put("/mirror2/" + dependency2.getMetadataPath(), Duration.ofMillis(500));
+        addMetadata("repo", dependency1, "1.0");
+        servlet.failingPaths.add("/repo/" + dependency2.getMetadataPath());
+
+        val versions = MavenMetadataRetriever.builder()
+            .repository(repository("mirror1").mirror(true).build())
+            .repository(repository("mirror2").mirror(true).build())
+            .repository(repository("repo").build())
+            .hedgeMirrors(true)
+            .build()
+            .retrieveAll(asList(dependency1, dependency2));
+
+        assertEquals(2, versions.size(), versions::toString);
+        assertThat(versions.get(dependency1)).hasVersion("2.0");
+        assertThat(versions.get(dependency2)).hasVersion("1.0");
+    }
+
+    @Test
+    void slowMirrorIsCancelled() throws Throwable {
+        addMetadata("mirror1", DEPENDENCY, "1.0", "2.0");
+        addMetadata("mirror2", DEPENDENCY, "1.0", "2.0");
+        servlet.slowPaths.add("/mirror1/" + DEPENDENCY.getMetadataPath());
+        servlet.responseDelays.put("/mirror2/" + DEPENDENCY.getMetadataPath(), Duration.ofMillis(500));
+
+        val version = MavenMetadataRetriever.builder()
+            .repository(repository("mirror1").mirror(true).build())
+            .repository(repository("mirror2").mirror(true).build())
+            .hedgeMirrors(true)
+            .build()
+            .retrieve(DEPENDENCY);
+
+        assertNotNull(version);
+        assertThat(version).hasVersion("2.0");
+
+        // the connection of the slow mirror is disconnected, so the server fails to write the rest of the response:
+        assertTrue(servlet.abortedSlowResponses.await(30, SECONDS));
+    }
+
+    @Test
+    void slowlyReadResponseExceedsRequestTimeout() throws Throwable {
+        addMetadata("repo1", DEPENDENCY, "1.0", "2.0");
+        addMetadata("repo2", DEPENDENCY, "1.0");
+        // every single read is much faster than the request timeout, but the whole response is much slower:
+        servlet.slowPaths.add("/repo1/" + DEPENDENCY.getMetadataPath());
+
+        val startNanos = System.nanoTime();
+        val version = MavenMetadataRetriever.builder()
+            .repository(repository("repo1").build())
+            .repository(repository("repo2").build())
+            .requestTimeout(Duration.ofSeconds(1))
+            .build()
+            .retrieve(DEPENDENCY);
+        val elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+
+        assertNotNull(version);
+        assertThat(version).hasVersion("1.0");
+        assertTrue(elapsed.compareTo(Duration.ofSeconds(10)) < 0, elapsed::toString);
+        assertTrue(servlet.abortedSlowResponses.await(30, SECONDS));
+    }
+
+    @Test
+    void snapshotVersionIsRetrievedFromVersionMetadata() {
+        addMetadata("repo1", DEPENDENCY, "1.0", "1.1-SNAPSHOT");
+        addSnapshotMetadata("repo1", DEPENDENCY, "1.1-SNAPSHOT", "20240101.123456", 5);
+        addMetadata("repo2", DEPENDENCY, "1.0", "1.1-SNAPSHOT");
+        addSnapshotMetadata("repo2", DEPENDENCY, "1.1-SNAPSHOT", "20240102.123456", 2);
+
+        val version = MavenMetadataRetriever.builder()
+            .repository(repository("repo1").build())
+            .repository(repository("repo2").build())
+            .withSnapshots(true)
+            .build()
+            .retrieve(DEPENDENCY);
+
+        assertNotNull(version);
+        assertThat(version)
+            .hasVersion("1.1-SNAPSHOT")
+            .hasMavenSnapshotVersion("1.1-20240102.123456-2");
+
+        // only version-level metadata of the max snapshot version is requested:
+        val versionMetadataPathSuffix = '/' + DEPENDENCY.getVersionMetadataPath("1.1-SNAPSHOT");
+        assertEquals(
+            2,
+            servlet.requestedPaths.stream().filter(path -> path.endsWith(versionMetadataPathSuffix)).count()
+        );
+    }
+
+    @Test
+    void versionsAreFilteredByReleasesAndSnapshots() {
+        addMetadata("releases", DEPENDENCY, "1.0", "2.0-SNAPSHOT");
+        addMetadata("snapshots", DEPENDENCY, "3.0", "2.1-SNAPSHOT");
+
+        val retrieverBuilder = MavenMetadataRetriever.builder()
+            .repository(repository("releases").withSnapshots(false).build())
+            .repository(repository("snapshots").withReleases(false).build());
+
+        val releaseVersion = retrieverBuilder.build().retrieve(DEPENDENCY);
+        assertNotNull(releaseVersion);
+        assertThat(releaseVersion).hasVersion("1.0");
+
+        val snapshotVersion = retrieverBuilder.withReleases(false).withSnapshots(true).build().retrieve(DEPENDENCY);
+        assertNotNull(snapshotVersion);
+        assertThat(snapshotVersion).hasVersion("2.1-SNAPSHOT");
+    }
+
+    @Test
+    void dependenciesWithoutVersionsAreNotIncluded() {
+        val dependency1 = new MavenDependency("test.group", "test-name-1");
+        val dependency2 = new MavenDependency("test.group", "test-name-2");
+        val dependency3 = new MavenDependency("test.group", "test-name-3");
+        addMetadata("repo", dependency1, "1.0");
+        addMetadata("repo", dependency3, "1.0-SNAPSHOT");
+
+        val versions = MavenMetadataRetriever.builder()
+            .repository(repository("repo").build())
+            .build()
+            .retrieveAll(asList(dependency1, dependency2, dependency3));
+
+        assertEquals(1, versions.size(), versions::toString);
+        assertThat(versions.get(dependency1)).hasVersion("1.0");
+        assertTrue(servlet.responseStatuses.contains(SC_NOT_FOUND), servlet.responseStatuses::toString);
+    }
+
+    @Test
+    void concurrentRequestsPerHostAreLimited() {
+        val dependencies = new ArrayList<MavenDependency>();
+        for (int i = 1; i <= 8; ++i) {
+            val dependency = new MavenDependency("test.group", "test-name-" + i);
+            addMetadata("repo", dependency, "1.0");
+            servlet.responseDelays.put("/repo/" + dependency.getMetadataPath(), Duration.ofMillis(300));
+            dependencies.add(dependency);
+        }
+
+        val versions = MavenMetadataRetriever.builder()
+            .repository(repository("repo").build())
+            .client(new MavenMetadataClient(new MavenHttpConnections(2), null))
+            .build()
+            .retrieveAll(dependencies);
+
+        assertEquals(dependencies.size(), versions.size(), versions::toString);
+        assertEquals(2, servlet.maxConcurrentRequests.get());
+    }
+
+
+    @SuppressWarnings("HttpUrlsUsage")
+    MavenRepositoryInfo.MavenRepositoryInfoBuilder repository(String name) {
+        return MavenRepositoryInfo.builder()
+            .uri(format("http://%s:%d/%s/", serverHost, serverPort, name))
+            .withReleases(true)
+            .withSnapshots(true);
+    }
+
+    void addMetadata(String repositoryName, MavenDependency dependency, String... versions) {
+        val content = new StringBuilder()
+            .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+            .append("<metadata>\n")
+            .append("  <groupId>").append(dependency.getGroup()).append("</groupId>\n")
+            .append("  <artifactId>").append(dependency.getName()).append("</artifactId>\n")
+            .append("  <versioning>\n")
+            .append("    <versions>\n");
+        for (val version : versions) {
+            content.append("      <version>").append(version).append("</version>\n");
+        }
+        content
+            .append("    </versions>\n")
+            .append("  </versioning>\n")
+            .append("</metadata>\n");
+        servlet.files.put('/' + repositoryName + '/' + dependency.getMetadataPath(), content.toString());
+    }
+
+    void addSnapshotMetadata(
+        String repositoryName,
+        MavenDependency dependency,
+        String version,
+        String timestamp,
+        int buildNumber
+    ) {
+        val content = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<metadata>\n"
+            + "  <groupId>" + dependency.getGroup() + "</groupId>\n"
+            + "  <artifactId>" + dependency.getName() + "</artifactId>\n"
+            + "  <version>" + version + "</version>\n"
+            + "  <versioning>\n"
+            + "    <snapshot>\n"
+            + "      <timestamp>" + timestamp + "</timestamp>\n"
+            + "      <buildNumber>" + buildNumber + "</buildNumber>\n"
+            + "    </snapshot>\n"
+            + "  </versioning>\n"
+            + "</metadata>\n";
+        servlet.files.put('/' + repositoryName + '/' + dependency.getVersionMetadataPath(version), content);
+    }
+
+
+    /**
+     * Serves Maven metadata files with {@code ETag} headers and answers conditional requests.
+     */
+    @SuppressWarnings("java:S2925")
+    static class RepositoryServlet extends HttpServlet {
+
+        final Map<String, String> files = new ConcurrentHashMap<>();
+
+        final Set<String> failingPaths = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Responses of these paths are written byte by byte, until the client disconnects.
+         */
+        final Set<String> slowPaths = ConcurrentHashMap.newKeySet();
+
+        final CountDownLatch abortedSlowResponses = new CountDownLatch(1);
+
+        final Map<String, Duration> responseDelays = new ConcurrentHashMap<>();
+
+        final List<String> requestedPaths = new CopyOnWriteArrayList<>();
+
+        final List<String> ifNoneMatchHeaders = new CopyOnWriteArrayList<>();
+
+        final List<Integer> responseStatuses = new CopyOnWriteArrayList<>();
+
+        final AtomicInteger concurrentRequests = new AtomicInteger();
+
+        final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+
+        String getEtag(String path) {
+            return '"' + Hashing.sha256().hashString(files.get(path), UTF_8).toString() + '"';
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            val path = request.getRequestURI();
+            requestedPaths.add(path);
+            maxConcurrentRequests.accumulateAndGet(concurrentRequests.incrementAndGet(), Math::max);
+            try {
+                sleep(responseDelays.getOrDefault(path, Duration.ZERO));
+                doGetImpl(path, request, response);
+            } finally {
+                concurrentRequests.decrementAndGet();
+            }
+        }
+
+        private void doGetImpl(
+            String path,
+            HttpServletRequest request,
+            HttpServletResponse response
+        ) throws IOException {
+            if (!path.endsWith(MavenUtils.MAVEN_METADATA_FILE_NAME) || !files.containsKey(path)) {
+                respondWithStatus(response, SC_NOT_FOUND);
+                return;
+            }
+
+            if (failingPaths.contains(path)) {
+                respondWithStatus(response, SC_INTERNAL_SERVER_ERROR);
+                return;
+            }
+
+            ifNoneMatchHeaders.add(defaultValue(request.getHeader("If-None-Match"), ""));
+            val etag = getEtag(path);
+            if (etag.equals(request.getHeader("If-None-Match"))) {
+                respondWithStatus(response, SC_NOT_MODIFIED);
+                return;
+            }
+
+            val content = files.get(path).getBytes(UTF_8);
+            responseStatuses.add(SC_OK);
+            response.setStatus(SC_OK);
+            response.setHeader("ETag", etag);
+            response.setContentType("application/xml");
+            response.setContentLength(content.length);
+
+            if (!slowPaths.contains(path)) {
+                response.getOutputStream().write(content);
+                return;
+            }
+
+            try {
+                for (val contentByte : content) {
+                    response.getOutputStream().write(contentByte);
+                    response.flushBuffer();
+                    sleep(Duration.ofMillis(100));
+                }
+            } catch (IOException e) {
+                abortedSlowResponses.countDown();
+            }
+        }
+
+        private void respondWithStatus(HttpServletResponse response, int status) {
+            responseStatuses.add(status);
+            response.setStatus(status);
+        }
+
+        private static void sleep(Duration duration) {
+            if (duration.isZero()) {
+                return;
+            }
+            try {
+                Thread.sleep(duration.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+}
@@ -2,18 +2,36 @@ package name.remal.gradle_plugins.versions_retriever;
 
 import static com.google.common.base.CaseFormat.LOWER_CAMEL;
 import static com.google.common.base.CaseFormat.LOWER_HYPHEN;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.copy;
+import static java.nio.file.Files.getLastModifiedTime;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.size;
+import static java.nio.file.Files.write;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static name.remal.gradle_plugins.toolkit.FileUtils.normalizeFile;
 import static name.remal.gradle_plugins.toolkit.PathUtils.createParentDirectories;
 import static name.remal.gradle_plugins.toolkit.PathUtils.deleteRecursively;
 import static name.remal.gradle_plugins.toolkit.PropertyUtils.getFinalized;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
 import com.google.errorprone.annotations.ForOverride;
 import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import lombok.val;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.ProjectLayout;
 import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.TaskAction;
 
@@ -29,19 +47,151 @@ public abstract class AbstractRetrieveVersions extends DefaultTask {
         );
     }
 
+    /**
+     * If enabled, nothing is retrieved from the network.
+     * Tasks that {@link #isLastResultUsedOffline() use the last result} copy the last successful result instead,
+     * other tasks retrieve versions from local data only.
+     * Gradle's {@code --offline} start parameter is used by default.
+     */
+    @Internal
+    public abstract Property<Boolean> getOffline();
+
+    {
+        getOffline().convention(getProject().getGradle().getStartParameter().isOffline());
+    }
+
+    /**
+     * A copy of the last successful result, used in {@link #getOffline() offline} mode,
+     * if {@link #isLastResultUsedOffline()} is {@code true}.
+     * It's stored in the Gradle user home by default, so it survives {@code clean}.
+     */
+    @Internal
+    public abstract RegularFileProperty getLastResultPropertiesFile();
+
+    {
+        val lastResultKey = Hashing.sha256().newHasher()
+            .putString(getProject().getProjectDir().getAbsolutePath(), UTF_8)
+            .putByte((byte) 0)
+            .putString(getPath(), UTF_8)
+            .hash()
+            .toString();
+        val lastResultFile = new File(
+            getProject().getGradle().getGradleUserHomeDir(),
+            "caches/versions-retriever/last-results/" + lastResultKey + ".properties"
+        );
+        getLastResultPropertiesFile().convention(getProjectLayout().file(getProject().provider(() -> lastResultFile)));
+    }
+
     @Inject
     protected abstract ProjectLayout getProjectLayout();
 
+    /**
+     * If {@code true}, the last successful result is stored and used in {@link #getOffline() offline} mode.
+     * Otherwise, {@link #retrieveImpl(File)} is executed in offline mode too.
+     */
+    @Internal
+    @ForOverride
+    protected boolean isLastResultUsedOffline() {
+        return true;
+    }
+
     @ForOverride
     protected abstract void retrieveImpl(File resultPropertiesFile);
 
+    /**
+     * Waits until the result of {@link #retrieveImpl(File)} is written, if it's written asynchronously.
+     */
+    @ForOverride
+    protected void awaitRetrieval() {
+        // do nothing by default
+    }
+
     @TaskAction
     public final void retrieve() {
         val resultPropertiesFile = normalizeFile(getFinalized(getResultPropertiesFile()).getAsFile());
         deleteRecursively(resultPropertiesFile.toPath());
         createParentDirectories(resultPropertiesFile.toPath());
+
+        val lastResultPropertiesFile = isLastResultUsedOffline()
+            ? getLastResultPropertiesFile().getAsFile().getOrNull()
+            : null;
+        if (getOffline().get() && isLastResultUsedOffline()) {
+            retrieveOffline(resultPropertiesFile, lastResultPropertiesFile);
+            setDidWork(true);
+            return;
+        }
+
         retrieveImpl(resultPropertiesFile);
+        awaitRetrieval();
+
+        if (lastResultPropertiesFile != null) {
+            storeLastResult(resultPropertiesFile.toPath(), lastResultPropertiesFile.toPath());
+        }
+
         setDidWork(true);
     }
 
+    /**
+     * The last successful result is used as is.
+     *
+     * <p>TODO: Refresh stale results in the background, so the next offline build gets a newer result,
+     * once the network is available again.
+     */
+    private void retrieveOffline(File resultPropertiesFile, @Nullable File lastResultPropertiesFile) {
+        try {
+            if (lastResultPropertiesFile != null && isRegularFile(lastResultPropertiesFile.toPath())) {
+                val lastResultPath = lastResultPropertiesFile.toPath();
+                val age = Duration.between(getLastModifiedTime(lastResultPath).toInstant(), Instant.now());
+                getLogger().warn(
+                    "Offline mode: using the last successful result retrieved {} ago",
+                    formatAge(age)
+                );
+                copy(lastResultPath, resultPropertiesFile.toPath(), REPLACE_EXISTING);
+                return;
+            }
+
+            getLogger().warn("Offline mode: no previous successful result exists, the result will be empty");
+            write(resultPropertiesFile.toPath(), new byte[0]);
+
+        } catch (Exception e) {
+            throw new IllegalStateException("Offline result couldn't be written to " + resultPropertiesFile, e);
+        }
+    }
+
+    /**
+     * Formats the age as {@code 1h 2m 3s}. Leading zero units are omitted, seconds are always shown.
+     * A negative age, caused by clock changes, is formatted as {@code 0s}.
+     */
+    @VisibleForTesting
+    static String formatAge(Duration age) {
+        val seconds = Math.max(age.getSeconds(), 0);
+        val hours = seconds / 3600;
+        val minutes = seconds % 3600 / 60;
+        if (hours > 0) {
+            return hours + "h " + minutes + "m " + seconds % 60 + "s";
+        } else if (minutes > 0) {
+            return minutes + "m " + seconds % 60 + "s";
+        } else {
+            return seconds + "s";
+        }
+    }
+
+    private void storeLastResult(Path resultPropertiesPath, Path lastResultPropertiesPath) {
+        try {
+            if (!isRegularFile(resultPropertiesPath) || size(resultPropertiesPath) == 0) {
+                return;
+            }
+
+            createParentDirectories(lastResultPropertiesPath);
+            val tempPath = lastResultPropertiesPath.resolveSibling(
+                lastResultPropertiesPath.getFileName() + "." + UUID.randomUUID() + ".tmp"
+            );
+            copy(resultPropertiesPath, tempPath, REPLACE_EXISTING);
+            move(tempPath, lastResultPropertiesPath, REPLACE_EXISTING, ATOMIC_MOVE);
+
+        } catch (Exception e) {
+            getLogger().warn("Last result couldn't be stored to {}: {}", lastResultPropertiesPath, e.toString());
+        }
+    }
+
 }
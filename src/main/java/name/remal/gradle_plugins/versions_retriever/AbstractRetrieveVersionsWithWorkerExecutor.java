@@ -56,6 +56,11 @@ public abstract class AbstractRetrieveVersionsWithWorkerExecutor extends Abstrac
         return JavaVersion.VERSION_1_8;
     }
 
+    @Override
+    protected void awaitRetrieval() {
+        getWorkerExecutor().await();
+    }
+
     protected final WorkQueue createWorkQueue() {
         boolean isForkEnabled = getForkOptions()
             .flatMap(VersionsRetrieverForkOptions::getEnabled)
@@ -0,0 +1,75 @@
+package name.remal.gradle_plugins.versions_retriever;
+
+import static java.lang.System.nanoTime;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.time.Duration;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import org.gradle.api.GradleException;
+
+/**
+ * A time budget that is shared by sequential phases of a retrieval.
+ * Every phase has its own timeout, limited by the time that remains of the whole budget,
+ * so time saved by fast phases is carried to the next ones.
+ */
+@RequiredArgsConstructor(access = PRIVATE)
+public final class TimeoutBudget {
+
+    private static final Duration MAX_TIMEOUT = Duration.ofDays(365);
+
+
+    public static TimeoutBudget startTimeoutBudget(String name, Duration timeout) {
+        return new TimeoutBudget(name, timeout, nanoTime() + toNanos(timeout));
+    }
+
+
+    private final String name;
+
+    private final Duration timeout;
+
+    private final long deadlineNanos;
+
+    /**
+     * Starts a phase that ends either after its own timeout, or when this budget is exhausted.
+     */
+    public TimeoutBudget startPhase(String phaseName, Duration phaseTimeout) {
+        val phaseDeadlineNanos = nanoTime() + toNanos(phaseTimeout);
+        if (phaseDeadlineNanos - deadlineNanos >= 0) {
+            return this;
+        }
+        return new TimeoutBudget(phaseName, phaseTimeout, phaseDeadlineNanos);
+    }
+
+    /**
+     * Returns the remaining time, or {@link Duration#ZERO} if the budget is exhausted.
+     */
+    public Duration getRemaining() {
+        val remainingNanos = deadlineNanos - nanoTime();
+        return remainingNanos > 0 ? Duration.ofNanos(remainingNanos) : Duration.ZERO;
+    }
+
+    public boolean isExhausted() {
+        return deadlineNanos - nanoTime() <= 0;
+    }
+
+    public void checkNotExhausted() {
+        if (isExhausted()) {
+            throw new GradleException(String.format("Timeout of %s exceeded: %s", timeout, name));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + getRemaining() + " of " + timeout + " remaining)";
+    }
+
+
+    private static long toNanos(Duration timeout) {
+        if (timeout.isNegative()) {
+            return 0;
+        }
+        return (timeout.compareTo(MAX_TIMEOUT) < 0 ? timeout : MAX_TIMEOUT).toNanos();
+    }
+
+}
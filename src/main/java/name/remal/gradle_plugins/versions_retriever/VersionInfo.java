@@ -8,7 +8,9 @@ import static name.remal.gradle_plugins.toolkit.PropertiesUtils.storeProperties;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 import javax.annotation.Nullable;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
@@ -27,6 +29,7 @@ public class VersionInfo implements Comparable<VersionInfo> {
     public static final String VERSION_PROPERTY = doNotInline("version");
     public static final String GIT_COMMIT_HASH_PROPERTY = doNotInline("git.commit.hash");
     public static final String GIT_TAG_PROPERTY = doNotInline("git.tag");
+    public static final String MAVEN_SNAPSHOT_VERSION_PROPERTY = doNotInline("maven.snapshot.version");
 
 
     @NonNull
@@ -38,6 +41,12 @@ public class VersionInfo implements Comparable<VersionInfo> {
     @Nullable
     String gitTag;
 
+    /**
+     * The timestamped version of the latest snapshot build, if {@link #version} is a snapshot version.
+     */
+    @Nullable
+    String mavenSnapshotVersion;
+
 
     @Override
     public int compareTo(VersionInfo other) {
@@ -47,27 +56,50 @@ public class VersionInfo implements Comparable<VersionInfo> {
 
     public static VersionInfo loadVersionInfo(Path path) {
         val properties = loadProperties(path);
-        return VersionInfo.builder()
-            .version(properties.getProperty(VERSION_PROPERTY))
-            .gitCommitHash(properties.getProperty(GIT_COMMIT_HASH_PROPERTY))
-            .gitTag(properties.getProperty(GIT_TAG_PROPERTY))
-            .build();
+        return readFrom(properties, "");
     }
 
     public static VersionInfo loadVersionInfo(File file) {
         return loadVersionInfo(file.toPath());
     }
 
+    /**
+     * Loads version infos stored by {@link #storeVersionInfos(Map, Path)}.
+     */
+    public static Map<String, VersionInfo> loadVersionInfos(Path path) {
+        val properties = loadProperties(path);
+        Map<String, VersionInfo> versionInfos = new TreeMap<>();
+        val versionPropertySuffix = '.' + VERSION_PROPERTY;
+        for (val name : properties.stringPropertyNames()) {
+            if (name.endsWith(versionPropertySuffix)) {
+                val key = name.substring(0, name.length() - versionPropertySuffix.length());
+                versionInfos.put(key, readFrom(properties, key + '.'));
+            }
+        }
+        return versionInfos;
+    }
+
+    public static Map<String, VersionInfo> loadVersionInfos(File file) {
+        return loadVersionInfos(file.toPath());
+    }
+
+    /**
+     * Stores version infos by keys. Properties of every version info are prefixed with {@code <key>.}.
+     */
+    public static void storeVersionInfos(Map<String, VersionInfo> versionInfos, Path path) {
+        val properties = new Properties();
+        versionInfos.forEach((key, versionInfo) -> versionInfo.writeTo(properties, key + '.'));
+        storeProperties(properties, path);
+    }
+
+    public static void storeVersionInfos(Map<String, VersionInfo> versionInfos, File file) {
+        storeVersionInfos(versionInfos, file.toPath());
+    }
+
 
     public void store(Path path) {
         val properties = new Properties();
-        properties.setProperty(VERSION_PROPERTY, version);
-        if (gitCommitHash != null) {
-            properties.setProperty(GIT_COMMIT_HASH_PROPERTY, gitCommitHash);
-        }
-        if (gitTag != null) {
-            properties.setProperty(GIT_COMMIT_HASH_PROPERTY, gitTag);
-        }
+        writeTo(properties, "");
         storeProperties(properties, path);
     }
 
@@ -76,6 +108,29 @@ public class VersionInfo implements Comparable<VersionInfo> {
     }
 
 
+    private static VersionInfo readFrom(Properties properties, String prefix) {
+        return VersionInfo.builder()
+            .version(properties.getProperty(prefix + VERSION_PROPERTY))
+            .gitCommitHash(properties.getProperty(prefix + GIT_COMMIT_HASH_PROPERTY))
+            .gitTag(properties.getProperty(prefix + GIT_TAG_PROPERTY))
+            .mavenSnapshotVersion(properties.getProperty(prefix + MAVEN_SNAPSHOT_VERSION_PROPERTY))
+            .build();
+    }
+
+    private void writeTo(Properties properties, String prefix) {
+        properties.setProperty(prefix + VERSION_PROPERTY, version);
+        if (gitCommitHash != null) {
+            properties.setProperty(prefix + GIT_COMMIT_HASH_PROPERTY, gitCommitHash);
+        }
+        if (gitTag != null) {
+            properties.setProperty(prefix + GIT_TAG_PROPERTY, gitTag);
+        }
+        if (mavenSnapshotVersion != null) {
+            properties.setProperty(prefix + MAVEN_SNAPSHOT_VERSION_PROPERTY, mavenSnapshotVersion);
+        }
+    }
+
+
     //#region: Internals
 
     @ToString
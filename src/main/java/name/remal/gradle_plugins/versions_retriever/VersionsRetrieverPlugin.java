@@ -1,24 +1,37 @@
 package name.remal.gradle_plugins.versions_retriever;
 
+import static com.google.common.base.Suppliers.memoize;
 import static java.lang.String.join;
+import static java.util.Locale.ROOT;
 import static name.remal.gradle_plugins.toolkit.AttributeContainerUtils.javaRuntimeLibrary;
+import static name.remal.gradle_plugins.toolkit.ObjectUtils.defaultValue;
 import static name.remal.gradle_plugins.toolkit.ObjectUtils.doNotInline;
 import static name.remal.gradle_plugins.versions_retriever.git.JGitDependencies.getJGitDependencies;
 import static org.gradle.api.artifacts.ExcludeRule.GROUP_KEY;
 import static org.gradle.api.artifacts.ExcludeRule.MODULE_KEY;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.Optional;
+import java.util.Set;
+import javax.annotation.Nullable;
+import lombok.CustomLog;
 import lombok.val;
 import name.remal.gradle_plugins.versions_retriever.git.AbstractRetrieveVersionsFromGit;
 import name.remal.gradle_plugins.versions_retriever.maven.AbstractRetrieveFromMaven;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
+import org.gradle.api.artifacts.repositories.PasswordCredentials;
+import org.gradle.api.provider.Provider;
 
+@CustomLog
 public abstract class VersionsRetrieverPlugin implements Plugin<Project> {
 
     public static final String VERSIONS_RETRIEVER_JGIT_CONFIGURATION_NAME = doNotInline("versionsRetrieverJGit");
 
+    private static final Set<String> HTTP_SCHEMES = ImmutableSet.of("http", "https");
+
     @Override
     public void apply(Project project) {
         configureJGitTasks(project);
@@ -46,12 +59,58 @@ public abstract class VersionsRetrieverPlugin implements Plugin<Project> {
 
     private static void configureMavenTasks(Project project) {
         project.getTasks().withType(AbstractRetrieveFromMaven.class).configureEach(task -> {
-            task.repositories(repos -> {
+            task.projectRepositories(repos -> {
                 project.getRepositories().withType(MavenArtifactRepository.class).all(artifactRepo -> {
-                    //repos.maven();
+                    val url = artifactRepo.getUrl();
+                    if (url == null || !HTTP_SCHEMES.contains(defaultValue(url.getScheme(), "").toLowerCase(ROOT))) {
+                        return;
+                    }
+
+                    val credentials = memoize(() -> Optional.ofNullable(
+                        getConfiguredPasswordCredentials(artifactRepo)
+                    ));
+                    repos.maven(repo -> {
+                        repo.getUri().set(url.toString());
+                        repo.getUsername().set(project.provider(() ->
+                            credentials.get().map(PasswordCredentials::getUsername).orElse(null)
+                        ));
+                        repo.getPassword().set(project.provider(() ->
+                            credentials.get().map(PasswordCredentials::getPassword).orElse(null)
+                        ));
+                    });
                 });
             });
         });
     }
 
+    /**
+     * {@link MavenArtifactRepository#getCredentials()} creates empty credentials if they aren't configured,
+     * which changes how the repository is resolved by Gradle. So, configured credentials are read without
+     * creating them, via the internal {@code getConfiguredCredentials()} method.
+     *
+     * <p>If this internal method isn't available in the current Gradle version, a warning is logged,
+     * and the repository is requested without credentials.
+     */
+    @Nullable
+    private static PasswordCredentials getConfiguredPasswordCredentials(MavenArtifactRepository repository) {
+        Object credentials;
+        try {
+            val method = repository.getClass().getMethod("getConfiguredCredentials");
+            credentials = method.invoke(repository);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn(
+                "Credentials of Maven repository `{}` couldn't be read, it will be requested without credentials."
+                    + " Configure credentials of this repository in the task explicitly. Cause: {}",
+                repository.getName(),
+                e.toString()
+            );
+            return null;
+        }
+
+        if (credentials instanceof Provider) {
+            credentials = ((Provider<?>) credentials).getOrNull();
+        }
+        return credentials instanceof PasswordCredentials ? (PasswordCredentials) credentials : null;
+    }
+
 }
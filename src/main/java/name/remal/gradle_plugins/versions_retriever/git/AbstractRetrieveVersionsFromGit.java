@@ -1,7 +1,37 @@
 package name.remal.gradle_plugins.versions_retriever.git;
 
+import static name.remal.gradle_plugins.versions_retriever.git.GitDeepenStrategy.EXPONENTIAL;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.DEEPEN_STRATEGY;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.DEEPEN_TIMEOUT;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.INITIAL_DEEPEN_DEPTH;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.MAX_DEEPEN_ATTEMPTS;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.OFFLINE;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.PROJECT_DIRECTORY;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.RESULT_PROPERTIES_FILE;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.TAGS_FETCH_TIMEOUT;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.TAG_PATTERNS;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.TOTAL_FETCH_TIMEOUT;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.UNSHALLOW_TIMEOUT;
+import static name.remal.gradle_plugins.versions_retriever.git.GitUtils.FETCH_TIMEOUT;
+import static name.remal.gradle_plugins.versions_retriever.git.GitUtils.TOTAL_FETCH_TIMEOUT;
+import static name.remal.gradle_plugins.versions_retriever.git.JGitClassLoaders.callInJGitClassLoader;
+import static name.remal.gradle_plugins.versions_retriever.git.JGitClassLoaders.executeInJGitClassLoader;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import lombok.val;
 import name.remal.gradle_plugins.versions_retriever.AbstractRetrieveVersionsWithWorkerExecutor;
 import org.gradle.api.JavaVersion;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.workers.WorkAction;
 
 public abstract class AbstractRetrieveVersionsFromGit extends AbstractRetrieveVersionsWithWorkerExecutor {
 
@@ -9,9 +39,177 @@ public abstract class AbstractRetrieveVersionsFromGit extends AbstractRetrieveVe
         getOutputs().cacheIf("This task should always fetch from remote Git repository", __ -> false);
     }
 
+    @Input
+    public abstract ListProperty<String> getTagPatterns();
+
+    /**
+     * The time budget of all fetches from the remote repository.
+     * Time that isn't used by a phase is carried to the next phases,
+     * and the task fails as soon as the budget is exhausted.
+     */
+    @Internal
+    public abstract Property<Duration> getTotalFetchTimeout();
+
+    {
+        getTotalFetchTimeout().convention(TOTAL_FETCH_TIMEOUT);
+    }
+
+    /**
+     * The timeout of listing and fetching tags.
+     */
+    @Internal
+    public abstract Property<Duration> getTagsFetchTimeout();
+
+    {
+        getTagsFetchTimeout().convention(FETCH_TIMEOUT);
+    }
+
+    /**
+     * How a shallow repository is deepened, if its local commits don't reach any version tag.
+     */
+    @Input
+    public abstract Property<GitDeepenStrategy> getDeepenStrategy();
+
+    {
+        getDeepenStrategy().convention(EXPONENTIAL);
+    }
+
+    /**
+     * The depth of the first deepen attempt, for {@link GitDeepenStrategy#FIXED}
+     * and {@link GitDeepenStrategy#EXPONENTIAL} strategies.
+     * Defaults to {@link GitDeepenStrategy#getDefaultInitialDeepenDepth()} of the deepen strategy.
+     */
+    @Input
+    public abstract Property<Integer> getInitialDeepenDepth();
+
+    {
+        getInitialDeepenDepth().convention(getDeepenStrategy().map(GitDeepenStrategy::getDefaultInitialDeepenDepth));
+    }
+
+    /**
+     * The max number of deepen attempts, before all commits are fetched.
+     */
+    @Input
+    public abstract Property<Integer> getMaxDeepenAttempts();
+
+    {
+        getMaxDeepenAttempts().convention(5);
+    }
+
+    /**
+     * The timeout of all attempts to deepen a shallow repository.
+     */
+    @Internal
+    public abstract Property<Duration> getDeepenTimeout();
+
+    {
+        getDeepenTimeout().convention(FETCH_TIMEOUT);
+    }
+
+    /**
+     * The timeout of fetching all commits of a shallow repository, after all deepen attempts.
+     */
+    @Internal
+    public abstract Property<Duration> getUnshallowTimeout();
+
+    {
+        getUnshallowTimeout().convention(FETCH_TIMEOUT);
+    }
+
+    /**
+     * If enabled, and the current JVM is supported, Git is accessed directly in the Gradle process,
+     * without the Worker API. JGit class loaders are cached by the classpath content hash,
+     * so JGit classes are loaded only once per Gradle daemon.
+     */
+    @Internal
+    public abstract Property<Boolean> getInProcess();
+
+    {
+        getInProcess().convention(false);
+    }
+
+    /**
+     * In {@link #getOffline() offline} mode, versions are retrieved from local tags and commits, without fetching.
+     * So, the result always corresponds to the current HEAD.
+     */
+    @Override
+    protected boolean isLastResultUsedOffline() {
+        return false;
+    }
+
     @Override
     protected JavaVersion getMinSupportedJavaVersion() {
         return JavaVersion.VERSION_11;
     }
 
+    protected final boolean isInProcessExecution() {
+        if (!getInProcess().get()) {
+            return false;
+        }
+
+        if (!isInProcessCallSupported()) {
+            getLogger().warn(
+                "The current Java version ({}) is less than {}, in-process execution is disabled for task {}",
+                JavaVersion.current().getMajorVersion(),
+                getMinSupportedJavaVersion().getMajorVersion(),
+                getPath()
+            );
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Creates settings of the retrieval, which are common for all tasks, see {@link GitRetrievalSettings}.
+     * Tasks add their own settings to the result.
+     */
+    final Map<String, Object> createGitRetrievalSettings(File resultPropertiesFile) {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put(RESULT_PROPERTIES_FILE, resultPropertiesFile);
+        settings.put(PROJECT_DIRECTORY, getProjectLayout().getProjectDirectory().getAsFile());
+        settings.put(TAG_PATTERNS, new ArrayList<>(getTagPatterns().get()));
+        settings.put(DEEPEN_STRATEGY, getDeepenStrategy().get().name());
+        settings.put(INITIAL_DEEPEN_DEPTH, getInitialDeepenDepth().get());
+        settings.put(MAX_DEEPEN_ATTEMPTS, getMaxDeepenAttempts().get());
+        settings.put(OFFLINE, getOffline().get());
+        settings.put(TOTAL_FETCH_TIMEOUT, getTotalFetchTimeout().get());
+        settings.put(TAGS_FETCH_TIMEOUT, getTagsFetchTimeout().get());
+        settings.put(DEEPEN_TIMEOUT, getDeepenTimeout().get());
+        settings.put(UNSHALLOW_TIMEOUT, getUnshallowTimeout().get());
+        return settings;
+    }
+
+    /**
+     * Executes the retrieval in the Gradle process, or with the Worker API, and waits until it's completed.
+     * The in-process entry class and the work action get the same settings.
+     */
+    final void executeRetrieval(
+        boolean isInProcess,
+        Class<? extends Consumer<Map<String, Object>>> inProcessEntryClass,
+        Class<? extends WorkAction<GitRetrievalActionParams>> actionClass,
+        Map<String, Object> settings
+    ) {
+        if (isInProcess) {
+            executeInJGitClassLoader(getClasspath().getFiles(), inProcessEntryClass.getName(), settings);
+            return;
+        }
+
+        val workQueue = createWorkQueue();
+        workQueue.submit(actionClass, params -> params.getSettings().set(settings));
+        workQueue.await();
+    }
+
+    /**
+     * Returns {@code false} if JGit can't be loaded in the Gradle process, as the current JVM isn't supported.
+     */
+    protected final boolean isInProcessCallSupported() {
+        return JavaVersion.current().compareTo(getMinSupportedJavaVersion()) >= 0;
+    }
+
+    @Nullable
+    protected final Object callInProcess(String entryClassName, Map<String, Object> settings) {
+        return callInJGitClassLoader(getClasspath().getFiles(), entryClassName, settings);
+    }
+
 }
@@ -0,0 +1,44 @@
+package name.remal.gradle_plugins.versions_retriever.git;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * How a shallow Git repository is deepened, if its local commits don't reach any version tag.
+ *
+ * <p>The repository is fully unshallowed once the max number of deepen attempts is exceeded.
+ */
+@RequiredArgsConstructor
+public enum GitDeepenStrategy {
+
+    /**
+     * Fetch with the initial depth once. The default initial depth is 1000.
+     */
+    FIXED(1000),
+
+    /**
+     * Fetch with the initial depth, doubling the depth on every next attempt. The default initial depth is 100.
+     */
+    EXPONENTIAL(100),
+
+    /**
+     * Fetch commits since the commit date of the newest version tag,
+     * then since the commit date of the next newest version tag on every next attempt.
+     */
+    SINCE_NEWEST_TAG(100),
+
+    /**
+     * Fetch all commits at once.
+     */
+    UNSHALLOW(100),
+
+    ;
+
+
+    /**
+     * The initial deepen depth, used if it isn't configured explicitly.
+     */
+    @Getter
+    private final int defaultInitialDeepenDepth;
+
+}
@@ -0,0 +1,44 @@
+package name.remal.gradle_plugins.versions_retriever.git;
+
+import static java.util.Arrays.asList;
+import static org.eclipse.jgit.lib.Constants.HEAD;
+
+import java.io.File;
+import java.util.Map;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+
+/**
+ * Resolves the Git directory and the HEAD commit of the repository of a directory with JGit.
+ * It's instantiated in a {@link JGitClassLoaders JGit class loader}, so the result has JDK types only:
+ * a list of the absolute path of the Git directory and the HEAD commit ID,
+ * or {@code null} if the directory isn't in a Git repository, or HEAD doesn't point to a commit.
+ */
+class GitHeadCommitResolver implements Function<Map<String, Object>, Object> {
+
+    static final String DIRECTORY = "directory";
+
+
+    @Nullable
+    @Override
+    @SneakyThrows
+    public Object apply(Map<String, Object> settings) {
+        val repositoryBuilder = new FileRepositoryBuilder().findGitDir((File) settings.get(DIRECTORY));
+        if (repositoryBuilder.getGitDir() == null) {
+            return null;
+        }
+
+        try (val repository = repositoryBuilder.setMustExist(true).build()) {
+            val headCommitId = repository.resolve(HEAD);
+            if (headCommitId == null) {
+                return null;
+            }
+
+            return asList(repository.getDirectory().getAbsolutePath(), headCommitId.name());
+        }
+    }
+
+}
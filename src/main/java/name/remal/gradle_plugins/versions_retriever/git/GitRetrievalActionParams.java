@@ -0,0 +1,14 @@
+package name.remal.gradle_plugins.versions_retriever.git;
+
+import org.gradle.api.provider.MapProperty;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * Parameters of Git work actions. The settings are the same as for in-process execution,
+ * see {@link GitRetrievalSettings}.
+ */
+interface GitRetrievalActionParams extends WorkParameters {
+
+    MapProperty<String, Object> getSettings();
+
+}
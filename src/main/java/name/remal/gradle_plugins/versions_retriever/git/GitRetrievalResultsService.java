@@ -0,0 +1,84 @@
+package name.remal.gradle_plugins.versions_retriever.git;
+
+import static name.remal.gradle_plugins.toolkit.ObjectUtils.doNotInline;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * Results of Git retrieval shared by all tasks of the build.
+ * Tasks of different projects in the same repository with the same configuration fetch and walk it only once.
+ *
+ * <p>Retrievals are deduplicated per key, so tasks with different keys are executed in parallel.
+ * A task waits for an in-flight retrieval with the same key only if it's executed in-process.
+ * A retrieval via the Worker API needs a worker lease of its own,
+ * that can be held by the waiting tasks, so such retrievals aren't waited for.
+ */
+public abstract class GitRetrievalResultsService implements BuildService<BuildServiceParameters.None> {
+
+    public static final String GIT_RETRIEVAL_RESULTS_SERVICE_NAME = doNotInline("versionsRetrieverGitRetrievalResults");
+
+
+    private final ConcurrentMap<List<Object>, Retrieval> retrievals = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the memoized content of the result properties file for the key, or retrieves it.
+     * Failed retrievals aren't memoized, so the next task with the same key retrieves it again.
+     *
+     * @param isInProcess {@code true} if the retrieval is executed in-process, so other tasks can wait for it
+     */
+    @SneakyThrows
+    byte[] getOrRetrieve(List<Object> key, boolean isInProcess, Callable<byte[]> retrieval) {
+        while (true) {
+            val newRetrieval = new Retrieval(isInProcess);
+            val currentRetrieval = retrievals.putIfAbsent(key, newRetrieval);
+            if (currentRetrieval == null) {
+                return retrieve(key, newRetrieval, retrieval);
+            }
+
+            if (!currentRetrieval.result.isDone() && !currentRetrieval.isInProcess) {
+                return retrieval.call();
+            }
+
+            try {
+                return currentRetrieval.result.get();
+            } catch (ExecutionException e) {
+                // the failed retrieval is removed, so it's retrieved again
+            }
+        }
+    }
+
+    @SneakyThrows
+    private byte[] retrieve(List<Object> key, Retrieval newRetrieval, Callable<byte[]> retrieval) {
+        try {
+            val result = retrieval.call();
+            newRetrieval.result.complete(result);
+            return result;
+
+        } catch (Throwable e) {
+            retrievals.remove(key, newRetrieval);
+            newRetrieval.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+
+    @RequiredArgsConstructor
+    private static class Retrieval {
+
+        private final boolean isInProcess;
+
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+    }
+
+}
@@ -0,0 +1,77 @@
+package name.remal.gradle_plugins.versions_retriever.git;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import lombok.NoArgsConstructor;
+import lombok.val;
+import name.remal.gradle_plugins.versions_retriever.git.RetrievePreviousVersionFromGitTagRetriever.RetrievePreviousVersionFromGitTagRetrieverBuilder;
+import org.gradle.api.GradleException;
+
+/**
+ * Settings of Git retrievals, which are common for all tasks.
+ * They are created by {@link AbstractRetrieveVersionsFromGit}, and read by work actions and in-process execution.
+ *
+ * <p>Settings have JDK types only, so they can be passed to a {@link JGitClassLoaders JGit class loader} as is.
+ */
+@NoArgsConstructor(access = PRIVATE)
+abstract class GitRetrievalSettings {
+
+    static final String RESULT_PROPERTIES_FILE = "resultPropertiesFile";
+    static final String PROJECT_DIRECTORY = "projectDirectory";
+    static final String TAG_PATTERNS = "tagPatterns";
+    static final String DEEPEN_STRATEGY = "deepenStrategy";
+    static final String INITIAL_DEEPEN_DEPTH = "initialDeepenDepth";
+    static final String MAX_DEEPEN_ATTEMPTS = "maxDeepenAttempts";
+    static final String OFFLINE = "offline";
+    static final String TOTAL_FETCH_TIMEOUT = "totalFetchTimeout";
+    static final String TAGS_FETCH_TIMEOUT = "tagsFetchTimeout";
+    static final String DEEPEN_TIMEOUT = "deepenTimeout";
+    static final String UNSHALLOW_TIMEOUT = "unshallowTimeout";
+
+
+    static Path getResultPropertiesFile(Map<String, Object> settings) {
+        return ((File) settings.get(RESULT_PROPERTIES_FILE)).toPath();
+    }
+
+    static File getProjectDirectory(Map<String, Object> settings) {
+        return (File) settings.get(PROJECT_DIRECTORY);
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<String> getTagPatterns(Map<String, Object> settings) {
+        return (List<String>) settings.get(TAG_PATTERNS);
+    }
+
+    static RetrievePreviousVersionFromGitTagRetrieverBuilder createRetrieverBuilder(Map<String, Object> settings) {
+        return RetrievePreviousVersionFromGitTagRetriever.builder()
+            .deepenStrategy(GitDeepenStrategy.valueOf((String) settings.get(DEEPEN_STRATEGY)))
+            .initialDeepenDepth(requirePositiveDeepenDepth((Integer) settings.get(INITIAL_DEEPEN_DEPTH)))
+            .maxDeepenAttempts((Integer) settings.get(MAX_DEEPEN_ATTEMPTS))
+            .offline(Boolean.TRUE.equals(settings.get(OFFLINE)))
+            .totalTimeout(getTimeout(settings, TOTAL_FETCH_TIMEOUT, "Total fetch timeout"))
+            .tagsFetchTimeout(getTimeout(settings, TAGS_FETCH_TIMEOUT, "Tags fetch timeout"))
+            .deepenTimeout(getTimeout(settings, DEEPEN_TIMEOUT, "Deepen timeout"))
+            .unshallowTimeout(getTimeout(settings, UNSHALLOW_TIMEOUT, "Unshallow timeout"));
+    }
+
+    private static int requirePositiveDeepenDepth(int initialDeepenDepth) {
+        if (initialDeepenDepth <= 0) {
+            throw new GradleException("Initial deepen depth must be positive: " + initialDeepenDepth);
+        }
+        return initialDeepenDepth;
+    }
+
+    private static Duration getTimeout(Map<String, Object> settings, String key, String name) {
+        val timeout = (Duration) settings.get(key);
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new GradleException(name + " must be positive: " + timeout);
+        }
+        return timeout;
+    }
+
+}
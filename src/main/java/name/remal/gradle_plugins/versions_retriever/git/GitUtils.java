@@ -5,6 +5,7 @@ import static org.apache.commons.lang3.ObjectUtils.max;
 
 import java.time.Duration;
 import lombok.NoArgsConstructor;
+import lombok.val;
 import org.gradle.api.logging.LogLevel;
 
 @NoArgsConstructor(access = PRIVATE)
@@ -12,8 +13,23 @@ abstract class GitUtils {
 
     public static final Duration FETCH_TIMEOUT = Duration.ofMinutes(5);
 
+    public static final Duration TOTAL_FETCH_TIMEOUT = Duration.ofMinutes(10);
+
     public static final LogLevel GIT_DEFAULT_LOG_LEVEL = LogLevel.INFO;
     public static final LogLevel GIT_WARN_LOG_LEVEL = max(LogLevel.WARN, GIT_DEFAULT_LOG_LEVEL);
     public static final LogLevel GIT_ERROR_LOG_LEVEL = max(LogLevel.ERROR, GIT_DEFAULT_LOG_LEVEL);
 
+
+    /**
+     * JGit timeouts are set in whole seconds, and {@code 0} means no timeout,
+     * so the timeout is rounded up to at least one second.
+     */
+    public static int toGitTimeoutSeconds(Duration timeout) {
+        val millis = timeout.toMillis();
+        if (millis <= 1000) {
+            return 1;
+        }
+        return (int) Math.min((millis + 999) / 1000, Integer.MAX_VALUE);
+    }
+
 }
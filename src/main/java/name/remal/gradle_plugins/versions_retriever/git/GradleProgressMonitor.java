@@ -9,6 +9,7 @@ import javax.annotation.Nullable;
 import lombok.CustomLog;
 import lombok.RequiredArgsConstructor;
 import lombok.val;
+import name.remal.gradle_plugins.versions_retriever.TimeoutBudget;
 import org.eclipse.jgit.lib.ProgressMonitor;
 import org.gradle.api.logging.LogLevel;
 import org.gradle.initialization.BuildCancellationToken;
@@ -22,8 +23,21 @@ class GradleProgressMonitor implements ProgressMonitor {
 
     private final LogLevel logLevel;
 
+    /**
+     * Git operations are cancelled, if this budget is exhausted.
+     */
+    @Nullable
+    private final TimeoutBudget timeoutBudget;
+
     public GradleProgressMonitor(@Nullable BuildCancellationToken buildCancellationToken) {
-        this(buildCancellationToken, GIT_DEFAULT_LOG_LEVEL);
+        this(buildCancellationToken, GIT_DEFAULT_LOG_LEVEL, null);
+    }
+
+    public GradleProgressMonitor(
+        @Nullable BuildCancellationToken buildCancellationToken,
+        @Nullable TimeoutBudget timeoutBudget
+    ) {
+        this(buildCancellationToken, GIT_DEFAULT_LOG_LEVEL, timeoutBudget);
     }
 
 
@@ -59,10 +73,10 @@ class GradleProgressMonitor implements ProgressMonitor {
 
     @Override
     public boolean isCancelled() {
-        if (buildCancellationToken != null) {
-            return buildCancellationToken.isCancellationRequested();
+        if (buildCancellationToken != null && buildCancellationToken.isCancellationRequested()) {
+            return true;
         }
-        return false;
+        return timeoutBudget != null && timeoutBudget.isExhausted();
     }
 
     @Override
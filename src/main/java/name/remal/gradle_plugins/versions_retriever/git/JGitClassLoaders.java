@@ -0,0 +1,273 @@
+package name.remal.gradle_plugins.versions_retriever.git;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import lombok.CustomLog;
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.val;
+
+/**
+ * Isolated class loaders for in-process execution, cached by the content hash of the JGit classpath.
+ * They live as long as the plugin class loader, so they are reused by all tasks of all builds in a Gradle daemon,
+ * and JGit classes are loaded only once.
+ *
+ * <p>Only the latest class loader is cached for the same classpath files.
+ * If the content of the files changes, the previous class loader is closed once no execution uses it anymore.
+ * Before that, JGit static state of the class loader is released by {@link JGitStaticStateReleaser},
+ * so its threads, open files and JVM-wide registrations don't keep the class loader.
+ *
+ * <p>JGit classes and classes of this package are loaded child-first.
+ * Other classes are loaded by the plugin class loader.
+ */
+@CustomLog
+@NoArgsConstructor(access = PRIVATE)
+abstract class JGitClassLoaders {
+
+    private static final String JGIT_PACKAGE_PREFIX = "org.eclipse.jgit.";
+
+    private static final String OWN_PACKAGE_PREFIX = JGitClassLoaders.class.getName().substring(
+        0,
+        JGitClassLoaders.class.getName().lastIndexOf('.') + 1
+    );
+
+    /**
+     * Class loaders by their classpath files. Guarded by itself.
+     */
+    private static final Map<String, JGitChildFirstClassLoader> CLASS_LOADERS = new HashMap<>();
+
+    private static final ConcurrentMap<String, FileContentHash> FILE_HASHES = new ConcurrentHashMap<>();
+
+
+    /**
+     * Creates an instance of the entry class in the isolated class loader, and passes the settings to it.
+     * Only JDK types can be passed in the settings, as other classes can be loaded by different class loaders.
+     */
+    @SuppressWarnings("unchecked")
+    public static void executeInJGitClassLoader(
+        Collection<File> classpath,
+        String entryClassName,
+        Map<String, Object> settings
+    ) {
+        invokeInJGitClassLoader(classpath, entryClassName, entry -> {
+            ((Consumer<Map<String, Object>>) entry).accept(settings);
+            return null;
+        });
+    }
+
+    /**
+     * Like {@link #executeInJGitClassLoader(Collection, String, Map)}, but the entry class is a {@link Function},
+     * and its result is returned. Only JDK types can be returned.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public static Object callInJGitClassLoader(
+        Collection<File> classpath,
+        String entryClassName,
+        Map<String, Object> settings
+    ) {
+        return invokeInJGitClassLoader(
+            classpath,
+            entryClassName,
+            entry -> ((Function<Map<String, Object>, Object>) entry).apply(settings)
+        );
+    }
+
+    @Nullable
+    private static Object invokeInJGitClassLoader(
+        Collection<File> classpath,
+        String entryClassName,
+        Function<Object, Object> invoker
+    ) {
+        val classLoader = acquireJGitClassLoader(classpath);
+        try {
+            return invokeEntry(classLoader, entryClassName, invoker);
+        } finally {
+            releaseJGitClassLoader(classLoader);
+        }
+    }
+
+    @Nullable
+    @SneakyThrows
+    private static Object invokeEntry(
+        ClassLoader classLoader,
+        String entryClassName,
+        Function<Object, Object> invoker
+    ) {
+        val entryConstructor = Class.forName(entryClassName, true, classLoader).getDeclaredConstructor();
+        entryConstructor.setAccessible(true);
+        val entry = entryConstructor.newInstance();
+
+        val currentThread = Thread.currentThread();
+        val prevContextClassLoader = currentThread.getContextClassLoader();
+        currentThread.setContextClassLoader(classLoader);
+        try {
+            return invoker.apply(entry);
+        } finally {
+            currentThread.setContextClassLoader(prevContextClassLoader);
+        }
+    }
+
+    private static void runEntry(ClassLoader classLoader, String entryClassName) {
+        invokeEntry(classLoader, entryClassName, entry -> {
+            ((Runnable) entry).run();
+            return null;
+        });
+    }
+
+    @SneakyThrows
+    private static JGitChildFirstClassLoader acquireJGitClassLoader(Collection<File> classpath) {
+        val filesKey = new StringBuilder();
+        val hasher = Hashing.sha256().newHasher();
+        val urls = new ArrayList<URL>();
+        for (val file : classpath) {
+            filesKey.append(file.getAbsolutePath()).append(File.pathSeparatorChar);
+            hasher.putBytes(getContentHash(file).asBytes());
+            urls.add(file.toURI().toURL());
+        }
+        urls.add(JGitClassLoaders.class.getProtectionDomain().getCodeSource().getLocation());
+        val contentHash = hasher.hash();
+
+        synchronized (CLASS_LOADERS) {
+            val cachedClassLoader = CLASS_LOADERS.get(filesKey.toString());
+            if (cachedClassLoader != null && cachedClassLoader.contentHash.equals(contentHash)) {
+                cachedClassLoader.usages++;
+                return cachedClassLoader;
+            }
+
+            val classLoader = new JGitChildFirstClassLoader(
+                urls.toArray(new URL[0]),
+                JGitClassLoaders.class.getClassLoader(),
+                contentHash
+            );
+            try {
+                runEntry(classLoader, JGitStaticStateInitializer.class.getName());
+            } catch (Throwable e) {
+                logger.warn("JGit static state of a new class loader couldn't be initialized: {}", e.toString());
+            }
+            classLoader.usages++;
+            CLASS_LOADERS.put(filesKey.toString(), classLoader);
+
+            if (cachedClassLoader != null) {
+                cachedClassLoader.evicted = true;
+                closeIfUnused(cachedClassLoader);
+            }
+
+            return classLoader;
+        }
+    }
+
+    private static void releaseJGitClassLoader(JGitChildFirstClassLoader classLoader) {
+        synchronized (CLASS_LOADERS) {
+            classLoader.usages--;
+            closeIfUnused(classLoader);
+        }
+    }
+
+    @SneakyThrows
+    private static void closeIfUnused(JGitChildFirstClassLoader classLoader) {
+        if (classLoader.evicted && classLoader.usages == 0) {
+            try {
+                runEntry(classLoader, JGitStaticStateReleaser.class.getName());
+            } catch (Throwable e) {
+                logger.warn("JGit resources of an evicted class loader couldn't be released: {}", e.toString());
+            }
+            classLoader.close();
+        }
+    }
+
+    /**
+     * Content hashes of files are cached by path. A cached hash is used only while the size and the modification time
+     * of the file are the same, so unchanged JAR files aren't read again.
+     */
+    @SneakyThrows
+    private static HashCode getContentHash(File file) {
+        val absoluteFile = file.getAbsoluteFile();
+        if (!absoluteFile.isFile()) {
+            return Hashing.sha256().hashUnencodedChars(absoluteFile.getPath());
+        }
+
+        val length = absoluteFile.length();
+        val lastModified = absoluteFile.lastModified();
+        val cachedHash = FILE_HASHES.get(absoluteFile.getPath());
+        if (cachedHash != null && cachedHash.getLength() == length && cachedHash.getLastModified() == lastModified) {
+            return cachedHash.getHash();
+        }
+
+        val hash = Files.asByteSource(absoluteFile).hash(Hashing.sha256());
+        FILE_HASHES.put(absoluteFile.getPath(), new FileContentHash(length, lastModified, hash));
+        return hash;
+    }
+
+
+    @Value
+    private static class FileContentHash {
+        long length;
+        long lastModified;
+        HashCode hash;
+    }
+
+    private static class JGitChildFirstClassLoader extends URLClassLoader {
+
+        static {
+            registerAsParallelCapable();
+        }
+
+        private final HashCode contentHash;
+
+        /**
+         * The number of executions that use this class loader. Guarded by {@link #CLASS_LOADERS}.
+         */
+        private int usages;
+
+        /**
+         * Guarded by {@link #CLASS_LOADERS}.
+         */
+        private boolean evicted;
+
+        JGitChildFirstClassLoader(URL[] urls, ClassLoader parent, HashCode contentHash) {
+            super(urls, parent);
+            this.contentHash = contentHash;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(JGIT_PACKAGE_PREFIX) && !name.startsWith(OWN_PACKAGE_PREFIX)) {
+                return super.loadClass(name, resolve);
+            }
+
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loadedClass = findLoadedClass(name);
+                if (loadedClass == null) {
+                    try {
+                        loadedClass = findClass(name);
+                    } catch (ClassNotFoundException e) {
+                        loadedClass = super.loadClass(name, false);
+                    }
+                }
+                if (resolve) {
+                    resolveClass(loadedClass);
+                }
+                return loadedClass;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,21 @@
+package name.remal.gradle_plugins.versions_retriever.git;
+
+import org.eclipse.jgit.internal.util.CleanupService;
+
+/**
+ * Initializes JGit static state of a new {@link JGitClassLoaders JGit class loader},
+ * before any other JGit class is used in it.
+ *
+ * <p>By default, JGit registers a JVM shutdown hook to release its resources, and this hook would keep
+ * the class loader until the Gradle daemon stops. If {@link CleanupService} is created explicitly,
+ * as JGit does in OSGi, the cleanup is registered in this service instead, and it's run
+ * by {@link JGitStaticStateReleaser}.
+ */
+class JGitStaticStateInitializer implements Runnable {
+
+    @Override
+    public void run() {
+        new CleanupService();
+    }
+
+}
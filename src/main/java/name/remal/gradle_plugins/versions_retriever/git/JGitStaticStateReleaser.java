@@ -0,0 +1,45 @@
+package name.remal.gradle_plugins.versions_retriever.git;
+
+import java.lang.management.ManagementFactory;
+import javax.management.ObjectName;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.eclipse.jgit.internal.util.CleanupService;
+import org.eclipse.jgit.lib.internal.WorkQueue;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+
+/**
+ * Releases JGit static state of an evicted {@link JGitClassLoaders JGit class loader},
+ * before the class loader is closed:
+ * <ul>
+ *     <li>the JGit cleanup registered in {@link CleanupService} by {@link JGitStaticStateInitializer} is run
+ *     <li>{@link WorkQueue} threads are stopped
+ *     <li>pack files opened by the window cache are closed, by installing a new window cache
+ *     <li>JGit MBeans registered by the class loader are unregistered
+ * </ul>
+ */
+class JGitStaticStateReleaser implements Runnable {
+
+    @Override
+    @SneakyThrows
+    public void run() {
+        val shutDownMethod = CleanupService.class.getDeclaredMethod("shutDown");
+        shutDownMethod.setAccessible(true);
+        shutDownMethod.invoke(CleanupService.getInstance());
+
+        WorkQueue.getExecutor().shutdownNow();
+
+        val windowCacheConfig = new WindowCacheConfig();
+        windowCacheConfig.setExposeStatsViaJmx(false);
+        windowCacheConfig.install();
+
+        val classLoader = JGitStaticStateReleaser.class.getClassLoader();
+        val mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        for (val mbeanName : mbeanServer.queryNames(new ObjectName("org.eclipse.jgit*:*"), null)) {
+            if (mbeanServer.getClassLoaderFor(mbeanName) == classLoader) {
+                mbeanServer.unregisterMBean(mbeanName);
+            }
+        }
+    }
+
+}
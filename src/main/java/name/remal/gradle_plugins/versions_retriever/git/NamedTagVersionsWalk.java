@@ -0,0 +1,199 @@
+package name.remal.gradle_plugins.versions_retriever.git;
+
+import static org.eclipse.jgit.lib.Constants.HEAD;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.SneakyThrows;
+import lombok.val;
+import name.remal.gradle_plugins.versions_retriever.VersionInfo;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Finds max versions of the nearest tagged commits of multiple named tag patterns in a single walk.
+ *
+ * <p>Every pattern has its own breadth-first frontier, that stops at commits tagged by this pattern,
+ * like {@link TagVersionWalk}. Frontiers of all patterns share one queue, so every commit is parsed only once.
+ * A pattern is done once its max tag version is reached, and the walk stops as soon as all patterns are done.
+ */
+class NamedTagVersionsWalk {
+
+    private final Repository repository;
+
+    private final List<String> names = new ArrayList<>();
+
+    private final List<TagVersionIndex> indexes = new ArrayList<>();
+
+    private final boolean ignoreCurrentCommit;
+
+    private final BitSet settledPatterns = new BitSet();
+
+    /**
+     * Patterns without any version tag are skipped, as their versions can't be found.
+     */
+    NamedTagVersionsWalk(
+        Repository repository,
+        Map<String, TagVersionIndex> namedIndexes,
+        boolean ignoreCurrentCommit
+    ) {
+        this.repository = repository;
+        namedIndexes.forEach((name, index) -> {
+            if (!index.isEmpty()) {
+                names.add(name);
+                indexes.add(index);
+            }
+        });
+        this.ignoreCurrentCommit = ignoreCurrentCommit;
+    }
+
+    public int getPatternsCount() {
+        return names.size();
+    }
+
+    @SneakyThrows
+    public Map<String, VersionInfo> walk() {
+        val patternsCount = indexes.size();
+        val maxVersions = new VersionInfo[patternsCount];
+        val donePatterns = new BitSet(patternsCount);
+        val shallowReachedPatterns = new BitSet(patternsCount);
+        val shallowCommits = repository.getObjectDatabase().getShallowCommits();
+
+        try (val walk = new PatternsCommitsWalk(repository)) {
+            walk.setRetainBody(false);
+            val queue = new ArrayDeque<PatternsCommit>();
+
+            val headCommit = (PatternsCommit) walk.parseCommit(repository.resolve(HEAD));
+            if (ignoreCurrentCommit) {
+                if (shallowCommits.contains(headCommit)) {
+                    shallowReachedPatterns.set(0, patternsCount);
+                }
+                for (val parent : headCommit.getParents()) {
+                    enqueue(walk, queue, (PatternsCommit) parent, 0, patternsCount);
+                }
+            } else {
+                enqueue(walk, queue, headCommit, 0, patternsCount);
+            }
+
+            while (!queue.isEmpty() && donePatterns.cardinality() < patternsCount) {
+                val commit = queue.pollFirst();
+                commit.isQueued = false;
+                val pendingPatterns = commit.pendingPatterns;
+                commit.pendingPatterns = new BitSet();
+                pendingPatterns.andNot(donePatterns);
+
+                for (int i = pendingPatterns.nextSetBit(0); i >= 0; i = pendingPatterns.nextSetBit(i + 1)) {
+                    val index = indexes.get(i);
+                    val version = index.get(commit);
+                    if (version != null) {
+                        if (maxVersions[i] == null || maxVersions[i].compareTo(version) < 0) {
+                            maxVersions[i] = version;
+                        }
+                        val maxTagVersion = index.getMaxVersion();
+                        if (maxTagVersion == null || maxVersions[i].compareTo(maxTagVersion) >= 0) {
+                            donePatterns.set(i);
+                        }
+                        continue;
+                    }
+
+                    if (shallowCommits.contains(commit)) {
+                        shallowReachedPatterns.set(i);
+                    }
+                    for (val parent : commit.getParents()) {
+                        enqueue(walk, queue, (PatternsCommit) parent, i, i + 1);
+                    }
+                }
+            }
+        }
+
+        settledPatterns.clear();
+        for (int i = 0; i < patternsCount; ++i) {
+            if (donePatterns.get(i) || !shallowReachedPatterns.get(i)) {
+                settledPatterns.set(i);
+            }
+        }
+
+        Map<String, VersionInfo> result = new LinkedHashMap<>();
+        for (int i = 0; i < names.size(); ++i) {
+            if (maxVersions[i] != null) {
+                result.put(names.get(i), maxVersions[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns {@code true} if the result of the last walk can't be changed by fetching more commits.
+     * It's so if every pattern either reached its max tag version, or reached no shallow commits.
+     */
+    public boolean isResultFinal() {
+        return settledPatterns.cardinality() >= getPatternsCount();
+    }
+
+
+    /**
+     * Adds the patterns from {@code fromPattern} (inclusive) to {@code toPattern} (exclusive)
+     * to the frontier of the commit, if they haven't visited it yet.
+     */
+    @SneakyThrows
+    private static void enqueue(
+        RevWalk walk,
+        ArrayDeque<PatternsCommit> queue,
+        PatternsCommit commit,
+        int fromPattern,
+        int toPattern
+    ) {
+        boolean isAdded = false;
+        for (int i = fromPattern; i < toPattern; ++i) {
+            if (!commit.visitedPatterns.get(i)) {
+                commit.visitedPatterns.set(i);
+                commit.pendingPatterns.set(i);
+                isAdded = true;
+            }
+        }
+        if (!isAdded) {
+            return;
+        }
+
+        walk.parseHeaders(commit);
+        if (!commit.isQueued) {
+            commit.isQueued = true;
+            queue.addLast(commit);
+        }
+    }
+
+
+    private static class PatternsCommit extends RevCommit {
+
+        private final BitSet visitedPatterns = new BitSet();
+
+        private BitSet pendingPatterns = new BitSet();
+
+        private boolean isQueued;
+
+        PatternsCommit(AnyObjectId id) {
+            super(id);
+        }
+
+    }
+
+    private static class PatternsCommitsWalk extends RevWalk {
+
+        PatternsCommitsWalk(Repository repository) {
+            super(repository);
+        }
+
+        @Override
+        protected RevCommit createCommit(AnyObjectId id) {
+            return new PatternsCommit(id);
+        }
+
+    }
+
+}
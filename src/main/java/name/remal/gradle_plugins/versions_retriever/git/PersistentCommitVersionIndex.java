@@ -0,0 +1,208 @@
+package name.remal.gradle_plugins.versions_retriever.git;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.move;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Collections.unmodifiableMap;
+import static name.remal.gradle_plugins.toolkit.PathUtils.createParentDirectories;
+import static name.remal.gradle_plugins.toolkit.PathUtils.deleteRecursively;
+import static name.remal.gradle_plugins.toolkit.PropertiesUtils.loadProperties;
+import static name.remal.gradle_plugins.toolkit.PropertiesUtils.storeProperties;
+import static org.eclipse.jgit.lib.Constants.R_TAGS;
+
+import com.google.common.hash.Hashing;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+import lombok.CustomLog;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.val;
+import name.remal.gradle_plugins.versions_retriever.VersionInfo;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * On-disk index of commits to the nearest version found by the tag walk.
+ *
+ * <p>The index is stored in the {@code .git} directory, one file per tag-pattern set.
+ * All entries are discarded once any Git tag changes.
+ * The file is replaced atomically, so concurrent retrievals never read a partially written index.
+ */
+@CustomLog
+@RequiredArgsConstructor
+class PersistentCommitVersionIndex {
+
+    private static final String INDEX_DIR_NAME = "versions-retriever/commit-version-index";
+
+    private static final String TAGS_SNAPSHOT_PROPERTY = "tags-snapshot";
+
+    private static final String VERSION_PROPERTY_SUFFIX = ".version";
+    private static final String GIT_COMMIT_HASH_PROPERTY_SUFFIX = ".git.commit.hash";
+    private static final String GIT_TAG_PROPERTY_SUFFIX = ".git.tag";
+
+    private static final int MAX_ENTRIES = 1_000;
+
+
+    private final Repository repository;
+
+    private final Path indexPath;
+
+    private final String loadedTagsSnapshot;
+
+    private final Map<ObjectId, VersionInfo> entries = new LinkedHashMap<>();
+
+    private final Set<ObjectId> putCommitIds = new HashSet<>();
+
+    private boolean changed;
+
+
+    public static PersistentCommitVersionIndex loadFor(Repository repository, List<Pattern> tagPatterns) {
+        val indexPath = getIndexPath(repository, tagPatterns);
+        val tagsSnapshot = getTagsSnapshot(repository);
+        val index = new PersistentCommitVersionIndex(repository, indexPath, tagsSnapshot);
+        index.load();
+        return index;
+    }
+
+    @Nullable
+    public VersionInfo get(AnyObjectId commitId) {
+        return entries.get(commitId);
+    }
+
+    public Map<ObjectId, VersionInfo> getEntries() {
+        return unmodifiableMap(entries);
+    }
+
+    public void put(AnyObjectId commitId, VersionInfo version) {
+        if (version.equals(entries.get(commitId))) {
+            return;
+        }
+
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.clear();
+            putCommitIds.clear();
+        }
+
+        val commitObjectId = commitId.copy();
+        entries.put(commitObjectId, version);
+        putCommitIds.add(commitObjectId);
+        changed = true;
+    }
+
+    /**
+     * Tags can be updated by deepening fetches after the index is loaded.
+     * In this case, the tags snapshot is taken again, and only entries put since loading are saved.
+     */
+    public void save() {
+        if (!changed) {
+            return;
+        }
+
+        val tagsSnapshot = getTagsSnapshot(repository);
+        if (!tagsSnapshot.equals(loadedTagsSnapshot)) {
+            entries.keySet().retainAll(putCommitIds);
+        }
+
+        val properties = new Properties();
+        properties.setProperty(TAGS_SNAPSHOT_PROPERTY, tagsSnapshot);
+        entries.forEach((commitId, version) -> {
+            val prefix = commitId.getName();
+            properties.setProperty(prefix + VERSION_PROPERTY_SUFFIX, version.getVersion());
+            if (version.getGitCommitHash() != null) {
+                properties.setProperty(prefix + GIT_COMMIT_HASH_PROPERTY_SUFFIX, version.getGitCommitHash());
+            }
+            if (version.getGitTag() != null) {
+                properties.setProperty(prefix + GIT_TAG_PROPERTY_SUFFIX, version.getGitTag());
+            }
+        });
+
+        val tempIndexPath = indexPath.resolveSibling(indexPath.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            createParentDirectories(indexPath);
+            storeProperties(properties, tempIndexPath);
+            move(tempIndexPath, indexPath, REPLACE_EXISTING, ATOMIC_MOVE);
+            changed = false;
+        } catch (Exception e) {
+            deleteRecursively(tempIndexPath);
+            logger.warn("Commit version index couldn't be saved to {}: {}", indexPath, e.toString());
+        }
+    }
+
+
+    private void load() {
+        if (!isRegularFile(indexPath)) {
+            return;
+        }
+
+        final Properties properties;
+        try {
+            properties = loadProperties(indexPath);
+        } catch (Exception e) {
+            logger.warn("Commit version index couldn't be loaded from {}: {}", indexPath, e.toString());
+            return;
+        }
+
+        if (!loadedTagsSnapshot.equals(properties.getProperty(TAGS_SNAPSHOT_PROPERTY))) {
+            logger.info("Git tags have been changed, ignoring commit version index {}", indexPath);
+            return;
+        }
+
+        for (val key : properties.stringPropertyNames()) {
+            if (!key.endsWith(VERSION_PROPERTY_SUFFIX)) {
+                continue;
+            }
+
+            val commitName = key.substring(0, key.length() - VERSION_PROPERTY_SUFFIX.length());
+            if (!ObjectId.isId(commitName)) {
+                continue;
+            }
+
+            val version = VersionInfo.builder()
+                .version(properties.getProperty(key))
+                .gitCommitHash(properties.getProperty(commitName + GIT_COMMIT_HASH_PROPERTY_SUFFIX))
+                .gitTag(properties.getProperty(commitName + GIT_TAG_PROPERTY_SUFFIX))
+                .build();
+            entries.put(ObjectId.fromString(commitName), version);
+        }
+    }
+
+    private static Path getIndexPath(Repository repository, List<Pattern> tagPatterns) {
+        val hasher = Hashing.sha256().newHasher();
+        for (val tagPattern : tagPatterns) {
+            hasher.putString(tagPattern.pattern(), UTF_8);
+            hasher.putInt(tagPattern.flags());
+        }
+        val fileName = hasher.hash() + ".properties";
+        return repository.getDirectory().toPath().resolve(INDEX_DIR_NAME).resolve(fileName);
+    }
+
+    @SneakyThrows
+    private static String getTagsSnapshot(Repository repository) {
+        val tagObjectIds = new TreeMap<String, ObjectId>();
+        for (val tagRef : repository.getRefDatabase().getRefsByPrefix(R_TAGS)) {
+            tagObjectIds.put(tagRef.getName(), tagRef.getObjectId());
+        }
+
+        val hasher = Hashing.sha256().newHasher();
+        tagObjectIds.forEach((name, objectId) -> {
+            hasher.putString(name, UTF_8);
+            hasher.putByte((byte) 0);
+            hasher.putString(objectId != null ? objectId.getName() : "", UTF_8);
+            hasher.putByte((byte) '\n');
+        });
+        return hasher.hash().toString();
+    }
+
+}
@@ -0,0 +1,188 @@
+package name.remal.gradle_plugins.versions_retriever.git;
+
+import static org.eclipse.jgit.lib.Constants.HEAD;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.val;
+import name.remal.gradle_plugins.versions_retriever.VersionInfo;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Computes previous versions of many commits in a single pass.
+ *
+ * <p>Commits are walked in reverse topological order, so parents are visited before their children.
+ * The version of every commit is computed only once, and it's shared by all requested commits that can reach it.
+ * The version of a tagged commit is its own tag version. The version of other commits is the max version
+ * of their parents. So, like {@link TagVersionWalk}, only the nearest tagged commits are taken into account.
+ */
+@RequiredArgsConstructor
+class PreviousVersionsWalk {
+
+    private static final String RANGE_SEPARATOR = "..";
+
+
+    private final Repository repository;
+
+    private final TagVersionIndex tagVersionIndex;
+
+    private final boolean ignoreCurrentCommit;
+
+    private boolean resultFinal = true;
+
+
+    /**
+     * Revisions can be single revisions or {@code <from>..<to>} ranges.
+     * Keys of the result are commit hashes. Commits without a reachable version aren't included.
+     */
+    @SneakyThrows
+    public Map<String, VersionInfo> walk(Collection<String> revisions) {
+        val requestedCommitIds = resolveCommitIds(revisions);
+        val shallowCommits = repository.getObjectDatabase().getShallowCommits();
+        val maxTagVersion = tagVersionIndex.getMaxVersion();
+
+        resultFinal = true;
+        Map<String, VersionInfo> result = new TreeMap<>();
+        try (val walk = new VersionedCommitsWalk(repository)) {
+            walk.setRetainBody(false);
+            val requestedFlag = walk.newFlag("requested");
+            for (val commitId : requestedCommitIds) {
+                val commit = walk.parseCommit(commitId);
+                commit.add(requestedFlag);
+                walk.markStart(commit);
+            }
+            walk.sort(RevSort.TOPO);
+            walk.sort(RevSort.REVERSE, true);
+
+            for (val commit : walk) {
+                VersionInfo parentsVersion = null;
+                boolean parentsReachShallowCommit = shallowCommits.contains(commit);
+                for (val parent : commit.getParents()) {
+                    val versionedParent = (VersionedCommit) parent;
+                    parentsVersion = max(parentsVersion, versionedParent.version);
+                    parentsReachShallowCommit |= versionedParent.reachesShallowCommit;
+                }
+
+                val versionedCommit = (VersionedCommit) commit;
+                val tagVersion = tagVersionIndex.get(commit);
+                if (tagVersion != null) {
+                    versionedCommit.version = tagVersion;
+                } else {
+                    versionedCommit.version = parentsVersion;
+                    versionedCommit.reachesShallowCommit = parentsReachShallowCommit;
+                }
+
+                if (commit.has(requestedFlag)) {
+                    val version = ignoreCurrentCommit ? parentsVersion : versionedCommit.version;
+                    val reachesShallowCommit = ignoreCurrentCommit
+                        ? parentsReachShallowCommit
+                        : versionedCommit.reachesShallowCommit;
+                    if (reachesShallowCommit
+                        && (version == null || maxTagVersion == null || version.compareTo(maxTagVersion) < 0)
+                    ) {
+                        resultFinal = false;
+                    }
+                    if (version != null) {
+                        result.put(commit.name(), version);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns {@code true} if the result of the last walk can't be changed by fetching more commits.
+     * It's so if every requested commit either reaches no shallow commits, or already has the max tag version.
+     */
+    public boolean isResultFinal() {
+        return resultFinal;
+    }
+
+    @SneakyThrows
+    private Set<ObjectId> resolveCommitIds(Collection<String> revisions) {
+        Set<ObjectId> commitIds = new LinkedHashSet<>();
+        try (val walk = new RevWalk(repository)) {
+            walk.setRetainBody(false);
+            for (val revision : revisions) {
+                val separatorIndex = revision.indexOf(RANGE_SEPARATOR);
+                if (separatorIndex < 0) {
+                    commitIds.add(resolveCommitId(revision));
+                    continue;
+                }
+
+                walk.reset();
+                walk.markUninteresting(walk.parseCommit(resolveCommitId(revision.substring(0, separatorIndex))));
+                walk.markStart(walk.parseCommit(resolveCommitId(
+                    revision.substring(separatorIndex + RANGE_SEPARATOR.length())
+                )));
+                for (val commit : walk) {
+                    commitIds.add(commit.copy());
+                }
+            }
+        }
+        return commitIds;
+    }
+
+    @SneakyThrows
+    private ObjectId resolveCommitId(String revision) {
+        val revisionToResolve = revision.isEmpty() ? HEAD : revision;
+        val commitId = repository.resolve(revisionToResolve + "^{commit}");
+        if (commitId == null) {
+            throw new IllegalArgumentException("Git revision can't be resolved to a commit: " + revisionToResolve);
+        }
+        return commitId;
+    }
+
+    @Nullable
+    private static VersionInfo max(@Nullable VersionInfo version1, @Nullable VersionInfo version2) {
+        if (version1 == null) {
+            return version2;
+        } else if (version2 == null) {
+            return version1;
+        }
+        return version1.compareTo(version2) >= 0 ? version1 : version2;
+    }
+
+
+    private static class VersionedCommit extends RevCommit {
+
+        @Nullable
+        private VersionInfo version;
+
+        /**
+         * {@code true} if a shallow commit is reachable from this commit without passing a tagged commit.
+         */
+        private boolean reachesShallowCommit;
+
+        VersionedCommit(AnyObjectId id) {
+            super(id);
+        }
+
+    }
+
+    private static class VersionedCommitsWalk extends RevWalk {
+
+        VersionedCommitsWalk(Repository repository) {
+            super(repository);
+        }
+
+        @Override
+        protected RevCommit createCommit(AnyObjectId id) {
+            return new VersionedCommit(id);
+        }
+
+    }
+
+}
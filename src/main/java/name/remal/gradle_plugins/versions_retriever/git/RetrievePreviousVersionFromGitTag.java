@@ -1,22 +1,111 @@
 package name.remal.gradle_plugins.versions_retriever.git;
 
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.write;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonMap;
+import static name.remal.gradle_plugins.versions_retriever.git.GitHeadCommitResolver.DIRECTORY;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalResultsService.GIT_RETRIEVAL_RESULTS_SERVICE_NAME;
+import static name.remal.gradle_plugins.versions_retriever.git.RetrievePreviousVersionFromGitTagAction.NAMED_TAG_PATTERNS;
+
 import java.io.File;
-import org.gradle.api.provider.ListProperty;
+import java.util.LinkedHashMap;
+import javax.annotation.Nullable;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.UntrackedTask;
 
 @UntrackedTask(because = "This task should always fetch from remote Git repository")
 public abstract class RetrievePreviousVersionFromGitTag extends AbstractRetrieveVersionsFromGit {
 
+    /**
+     * Tag patterns by names. If set, the previous version is retrieved for every pattern separately, in a single walk,
+     * and the result properties file has {@code <name>.version} property for every pattern with a reachable version.
+     * {@link #getTagPatterns()} must be empty in this case.
+     */
     @Input
-    public abstract ListProperty<String> getTagPatterns();
+    public abstract MapProperty<String, String> getNamedTagPatterns();
+
+    @Internal
+    protected abstract Property<GitRetrievalResultsService> getRetrievalResultsService();
 
+    {
+        val retrievalResultsService = getProject().getGradle().getSharedServices().registerIfAbsent(
+            GIT_RETRIEVAL_RESULTS_SERVICE_NAME,
+            GitRetrievalResultsService.class,
+            spec -> { }
+        );
+        getRetrievalResultsService().convention(retrievalResultsService);
+        usesService(retrievalResultsService);
+    }
+
+    /**
+     * The result is memoized per Git directory, HEAD commit and configuration,
+     * so tasks of other projects in the same repository reuse it without fetching and walking again.
+     */
+    @Override
+    @SneakyThrows
     protected void retrieveImpl(File resultPropertiesFile) {
-        createWorkQueue().submit(RetrievePreviousVersionFromGitTagAction.class, params -> {
-            params.getResultPropertiesFile().set(resultPropertiesFile);
-            params.getProjectDirectory().set(getProjectLayout().getProjectDirectory());
-            params.getTagPatterns().set(getTagPatterns());
+        val isInProcess = isInProcessExecution();
+        val headCommit = resolveHeadCommit();
+        if (headCommit == null) {
+            retrieveNow(resultPropertiesFile, isInProcess);
+            return;
+        }
+
+        val key = asList(
+            headCommit,
+            getTagPatterns().get(),
+            getNamedTagPatterns().get(),
+            getDeepenStrategy().get(),
+            getInitialDeepenDepth().get(),
+            getMaxDeepenAttempts().get(),
+            getOffline().get()
+        );
+        val content = getRetrievalResultsService().get().getOrRetrieve(key, isInProcess, () -> {
+            retrieveNow(resultPropertiesFile, isInProcess);
+            return readAllBytes(resultPropertiesFile.toPath());
         });
+        write(resultPropertiesFile.toPath(), content);
+    }
+
+    /**
+     * Resolves the Git directory and the HEAD commit with JGit in the Gradle process.
+     * If they can't be resolved, {@code null} is returned, and the result isn't memoized.
+     */
+    @Nullable
+    private Object resolveHeadCommit() {
+        if (!isInProcessCallSupported()) {
+            return null;
+        }
+
+        try {
+            return callInProcess(
+                GitHeadCommitResolver.class.getName(),
+                singletonMap(DIRECTORY, getProjectLayout().getProjectDirectory().getAsFile())
+            );
+        } catch (Exception e) {
+            getLogger().info(
+                "HEAD commit couldn't be resolved, the result isn't shared with other tasks: {}",
+                e.toString()
+            );
+            return null;
+        }
+    }
+
+    private void retrieveNow(File resultPropertiesFile, boolean isInProcess) {
+        val settings = createGitRetrievalSettings(resultPropertiesFile);
+        settings.put(NAMED_TAG_PATTERNS, new LinkedHashMap<>(getNamedTagPatterns().get()));
+        executeRetrieval(
+            isInProcess,
+            RetrievePreviousVersionFromGitTagInProcess.class,
+            RetrievePreviousVersionFromGitTagAction.class,
+            settings
+        );
     }
 
 }
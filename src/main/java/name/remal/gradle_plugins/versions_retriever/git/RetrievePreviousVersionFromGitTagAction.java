@@ -6,8 +6,16 @@ import static lombok.AccessLevel.PUBLIC;
 import static name.remal.gradle_plugins.toolkit.PathUtils.createParentDirectories;
 import static name.remal.gradle_plugins.toolkit.PathUtils.normalizePath;
 import static name.remal.gradle_plugins.toolkit.git.GitUtils.findGitRepositoryRootFor;
+import static name.remal.gradle_plugins.versions_retriever.VersionInfo.storeVersionInfos;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.createRetrieverBuilder;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.getProjectDirectory;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.getResultPropertiesFile;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.getTagPatterns;
 import static name.remal.gradle_plugins.versions_retriever.git.GitUtils.GIT_ERROR_LOG_LEVEL;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 import javax.inject.Inject;
 import lombok.CustomLog;
@@ -21,16 +29,28 @@ import org.gradle.workers.WorkAction;
 @CustomLog
 @SuppressWarnings("java:S3776")
 abstract class RetrievePreviousVersionFromGitTagAction
-    implements WorkAction<RetrievePreviousVersionFromGitTagActionParams> {
+    implements WorkAction<GitRetrievalActionParams> {
+
+    static final String NAMED_TAG_PATTERNS = "namedTagPatterns";
+
 
     @Override
-    @SneakyThrows
     public void execute() {
-        val params = getParameters();
-        val resultPropertiesPath = normalizePath(params.getResultPropertiesFile().get().getAsFile().toPath());
+        retrievePreviousVersionFromGitTag(getParameters().getSettings().get());
+    }
+
+    /**
+     * Retrieves the version and writes it to the result file.
+     * If named tag patterns are set, versions are written by pattern names instead.
+     * It's shared by the work action and {@link RetrievePreviousVersionFromGitTagInProcess in-process} execution.
+     */
+    @SneakyThrows
+    @SuppressWarnings("unchecked")
+    static void retrievePreviousVersionFromGitTag(Map<String, Object> settings) {
+        val resultPropertiesPath = normalizePath(getResultPropertiesFile(settings));
         createParentDirectories(resultPropertiesPath);
 
-        val projectDir = params.getProjectDirectory().getAsFile().get();
+        val projectDir = getProjectDirectory(settings);
         val repositoryPath = findGitRepositoryRootFor(projectDir.toPath());
         if (repositoryPath == null) {
             logger.log(
@@ -42,14 +62,31 @@ abstract class RetrievePreviousVersionFromGitTagAction
             return;
         }
 
-        val tagPatterns = params.getTagPatterns().get().stream()
+        val tagPatternStrings = getTagPatterns(settings);
+        val namedTagPatternStrings = (Map<String, String>) settings.get(NAMED_TAG_PATTERNS);
+        if (!namedTagPatternStrings.isEmpty()) {
+            if (!tagPatternStrings.isEmpty()) {
+                throw new GradleException("Only one of tag patterns or named tag patterns can be set");
+            }
+
+            Map<String, Pattern> namedTagPatterns = new LinkedHashMap<>();
+            namedTagPatternStrings.forEach((name, pattern) -> namedTagPatterns.put(name, Pattern.compile(pattern)));
+            val retriever = createRetrieverBuilder(settings)
+                .tagPatterns(namedTagPatterns.values())
+                .build();
+            val versions = retriever.retrieveByNamedPatterns(repositoryPath, namedTagPatterns);
+            storeVersionInfos(versions, resultPropertiesPath);
+            return;
+        }
+
+        val tagPatterns = tagPatternStrings.stream()
             .map(Pattern::compile)
             .collect(toList());
         if (tagPatterns.isEmpty()) {
             throw new GradleException("Tag patterns can't be empty");
         }
 
-        val retriever = RetrievePreviousVersionFromGitTagRetriever.builder()
+        val retriever = createRetrieverBuilder(settings)
             .tagPatterns(tagPatterns)
             .build();
         val refVersion = retriever.retrieve(repositoryPath);
@@ -62,5 +99,4 @@ abstract class RetrievePreviousVersionFromGitTagAction
         refVersion.store(resultPropertiesPath);
     }
 
-
 }
@@ -1,33 +1,40 @@
 package name.remal.gradle_plugins.versions_retriever.git;
 
-import static java.lang.Math.toIntExact;
-import static java.util.Collections.emptySet;
+import static java.lang.Math.min;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.reverseOrder;
 import static java.util.stream.Collectors.toList;
 import static lombok.AccessLevel.PRIVATE;
-import static name.remal.gradle_plugins.toolkit.ObjectUtils.defaultValue;
 import static name.remal.gradle_plugins.toolkit.ObjectUtils.isEmpty;
 import static name.remal.gradle_plugins.toolkit.ObjectUtils.isNotEmpty;
 import static name.remal.gradle_plugins.toolkit.PredicateUtils.not;
-import static name.remal.gradle_plugins.toolkit.SneakyThrowUtils.sneakyThrows;
+import static name.remal.gradle_plugins.versions_retriever.TimeoutBudget.startTimeoutBudget;
+import static name.remal.gradle_plugins.versions_retriever.git.GitDeepenStrategy.EXPONENTIAL;
+import static name.remal.gradle_plugins.versions_retriever.git.GitDeepenStrategy.SINCE_NEWEST_TAG;
 import static name.remal.gradle_plugins.versions_retriever.git.GitUtils.FETCH_TIMEOUT;
 import static name.remal.gradle_plugins.versions_retriever.git.GitUtils.GIT_DEFAULT_LOG_LEVEL;
 import static name.remal.gradle_plugins.versions_retriever.git.GitUtils.GIT_ERROR_LOG_LEVEL;
 import static name.remal.gradle_plugins.versions_retriever.git.GitUtils.GIT_WARN_LOG_LEVEL;
+import static name.remal.gradle_plugins.versions_retriever.git.GitUtils.TOTAL_FETCH_TIMEOUT;
+import static name.remal.gradle_plugins.versions_retriever.git.GitUtils.toGitTimeoutSeconds;
+import static org.eclipse.jgit.lib.ConfigConstants.CONFIG_COMMIT_GRAPH;
+import static org.eclipse.jgit.lib.ConfigConstants.CONFIG_CORE_SECTION;
 import static org.eclipse.jgit.lib.Constants.DEFAULT_REMOTE_NAME;
 import static org.eclipse.jgit.lib.Constants.DOT_GIT;
 import static org.eclipse.jgit.lib.Constants.HEAD;
 import static org.eclipse.jgit.lib.Constants.R_TAGS;
-import static org.eclipse.jgit.lib.Repository.shortenRefName;
-import static org.eclipse.jgit.revwalk.RevFlag.UNINTERESTING;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
 import java.nio.file.Path;
-import java.util.ArrayDeque;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
@@ -38,19 +45,20 @@ import lombok.RequiredArgsConstructor;
 import lombok.Singular;
 import lombok.SneakyThrows;
 import lombok.val;
-import name.remal.gradle_plugins.toolkit.SneakyThrowUtils.SneakyThrowsConsumer;
-import name.remal.gradle_plugins.toolkit.Version;
+import name.remal.gradle_plugins.versions_retriever.TimeoutBudget;
 import name.remal.gradle_plugins.versions_retriever.VersionInfo;
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.internal.storage.commitgraph.CommitGraph;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.SubmoduleConfig.FetchRecurseSubmodulesMode;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.transport.RemoteConfig;
 import org.eclipse.jgit.transport.TagOpt;
 import org.gradle.initialization.BuildCancellationToken;
@@ -60,12 +68,69 @@ import org.gradle.initialization.BuildCancellationToken;
 @CustomLog
 class RetrievePreviousVersionFromGitTagRetriever {
 
+    private static final Set<RefUpdate.Result> UPDATED_REF_RESULTS = ImmutableSet.of(
+        RefUpdate.Result.NEW,
+        RefUpdate.Result.FORCED,
+        RefUpdate.Result.FAST_FORWARD,
+        RefUpdate.Result.NO_CHANGE
+    );
+
+
     @Singular("tagPattern")
     private final List<Pattern> tagPatterns;
 
     @Default
     private final boolean ignoreCurrentCommit = true;
 
+    @Default
+    private final boolean incrementalTagsFetch = true;
+
+    @Default
+    private final boolean usePersistentIndex = true;
+
+    @Default
+    private final boolean useCommitGraph = true;
+
+    @Default
+    private final boolean useRefAdvertisement = true;
+
+    /**
+     * If enabled, nothing is fetched from the remote repository, and only local tags and commits are walked.
+     * Shallow repositories aren't deepened in this mode.
+     */
+    @Default
+    private final boolean offline = false;
+
+    @Default
+    private final GitDeepenStrategy deepenStrategy = EXPONENTIAL;
+
+    /**
+     * If {@code null}, {@link GitDeepenStrategy#getDefaultInitialDeepenDepth()} of {@link #deepenStrategy} is used.
+     */
+    @Nullable
+    private final Integer initialDeepenDepth;
+
+    @Default
+    private final int maxDeepenAttempts = 5;
+
+    /**
+     * The time budget of all fetches. Time that isn't used by a phase is carried to the next phases.
+     */
+    @Default
+    private final Duration totalTimeout = TOTAL_FETCH_TIMEOUT;
+
+    @Default
+    private final Duration tagsFetchTimeout = FETCH_TIMEOUT;
+
+    /**
+     * The timeout of all deepen attempts together, except the last one that fetches all commits.
+     */
+    @Default
+    private final Duration deepenTimeout = FETCH_TIMEOUT;
+
+    @Default
+    private final Duration unshallowTimeout = FETCH_TIMEOUT;
+
     @Nullable
     private final BuildCancellationToken buildCancellationToken;
 
@@ -83,40 +148,41 @@ class RetrievePreviousVersionFromGitTagRetriever {
             val repository = FileRepositoryBuilder.create(repositoryPath.resolve(DOT_GIT).toFile());
             val git = new Git(repository)
         ) {
+            if (useCommitGraph) {
+                enableCommitGraph(repository);
+            }
             return retrieve(git);
         }
     }
 
     @Nullable
     @SneakyThrows
-    @SuppressWarnings("JavaDurationGetSecondsToToSeconds")
     private VersionInfo retrieve(Git git) {
-        val fetchRemote = getFetchRemote(git);
-        if (fetchRemote == null) {
-            logger.log(
-                GIT_ERROR_LOG_LEVEL,
-                "No remotes are configured for Git repository {}",
-                git.getRepository().getDirectory()
-            );
+        val fetchRemoteName = getFetchRemoteName(git);
+        if (fetchRemoteName == null && !offline) {
             return null;
         }
 
-        logger.log(
-            GIT_DEFAULT_LOG_LEVEL,
-            "Fetching tags"
-        );
-        val fetchRemoteName = fetchRemote.getName();
-        git.fetch()
-            .setRefSpecs(R_TAGS + "*" + ':' + R_TAGS + "*")
-            .setRecurseSubmodules(FetchRecurseSubmodulesMode.NO)
-            .setRemote(fetchRemoteName)
-            .setProgressMonitor(new GradleProgressMonitor(buildCancellationToken))
-            .setTimeout(toIntExact(FETCH_TIMEOUT.getSeconds()))
-            .call();
-
         val repository = git.getRepository();
-        val objectIdVersions = collectObjectIdVersions(repository);
-        if (objectIdVersions.isEmpty()) {
+
+        val timeoutBudget = startTimeoutBudget("Git fetch", totalTimeout);
+        val tagsFetchBudget = timeoutBudget.startPhase("Git tags fetch", tagsFetchTimeout);
+
+        if (fetchRemoteName != null) {
+            Collection<Ref> remoteTagRefs = null;
+            if (useRefAdvertisement && isNotEmpty(repository.getObjectDatabase().getShallowCommits())) {
+                remoteTagRefs = listRemoteTags(git, fetchRemoteName, tagsFetchBudget);
+                val advertisedVersion = retrieveFromAdvertisedRefs(repository, remoteTagRefs);
+                if (advertisedVersion != null) {
+                    return advertisedVersion;
+                }
+            }
+
+            fetchTags(git, fetchRemoteName, remoteTagRefs, tagsFetchBudget);
+        }
+
+        val tagVersionIndex = TagVersionIndex.build(repository, tagPatterns);
+        if (tagVersionIndex.isEmpty()) {
             logger.log(
                 GIT_WARN_LOG_LEVEL,
                 "No version tags found for Git repository {}",
@@ -125,45 +191,35 @@ class RetrievePreviousVersionFromGitTagRetriever {
             return null;
         }
 
+        val persistentIndex = usePersistentIndex
+            ? PersistentCommitVersionIndex.loadFor(repository, tagPatterns)
+            : null;
 
-        VersionInfo commitVersion = retrieveImpl(repository);
+        VersionInfo commitVersion = retrieveImpl(repository, tagVersionIndex, persistentIndex);
 
-        if (commitVersion == null && isNotEmpty(repository.getObjectDatabase().getShallowCommits())) {
-            int depth = 1000;
-            logger.log(
-                GIT_WARN_LOG_LEVEL,
-                "The repository was cloned/fetched partially, and existing local commits don't have version tags"
-                    + " => fetching with {} depth",
-                depth
+        int deepenAttempt = 0;
+        TimeoutBudget deepenBudget = null;
+        while (commitVersion == null
+            && fetchRemoteName != null
+            && isNotEmpty(repository.getObjectDatabase().getShallowCommits())
+        ) {
+            ++deepenAttempt;
+            if (deepenBudget == null) {
+                deepenBudget = timeoutBudget.startPhase("Git deepen", deepenTimeout);
+            }
+            deepen(
+                git,
+                fetchRemoteName,
+                tagVersionIndex,
+                deepenAttempt,
+                timeoutBudget,
+                deepenBudget
             );
-            git.fetch()
-                .setDepth(depth)
-                .setTagOpt(TagOpt.NO_TAGS)
-                .setRecurseSubmodules(FetchRecurseSubmodulesMode.NO)
-                .setRemote(fetchRemoteName)
-                .setProgressMonitor(new GradleProgressMonitor(buildCancellationToken))
-                .setTimeout(toIntExact(FETCH_TIMEOUT.getSeconds()))
-                .call();
-
-            commitVersion = retrieveImpl(repository);
+            commitVersion = retrieveImpl(repository, tagVersionIndex, persistentIndex);
         }
 
-        if (commitVersion == null && isNotEmpty(repository.getObjectDatabase().getShallowCommits())) {
-            logger.log(
-                GIT_WARN_LOG_LEVEL,
-                "The repository was fetched partially, and existing local commits don't have version tags"
-                    + " => fetching all commits"
-            );
-            git.fetch()
-                .setUnshallow(true)
-                .setTagOpt(TagOpt.NO_TAGS)
-                .setRecurseSubmodules(FetchRecurseSubmodulesMode.NO)
-                .setRemote(fetchRemoteName)
-                .setProgressMonitor(new GradleProgressMonitor(buildCancellationToken))
-                .setTimeout(toIntExact(FETCH_TIMEOUT.getSeconds()))
-                .call();
-
-            commitVersion = retrieveImpl(repository);
+        if (persistentIndex != null) {
+            persistentIndex.save();
         }
 
         if (commitVersion == null) {
@@ -179,144 +235,527 @@ class RetrievePreviousVersionFromGitTagRetriever {
         return commitVersion;
     }
 
-    @Nullable
+    /**
+     * Retrieves previous versions of all commits of the revisions at once.
+     * Revisions can be single revisions or {@code <from>..<to>} ranges.
+     * Shallow repositories are deepened until previous versions of all commits can't be changed by fetching more.
+     *
+     * <p>Keys of the result are commit hashes. Commits without a reachable version aren't included.
+     */
+    @VisibleForTesting
     @SneakyThrows
-    @SuppressWarnings("java:S3776")
-    private VersionInfo retrieveImpl(Repository repository) {
-        try (val walk = new RevWalk(repository)) {
-            walk.sort(RevSort.NONE);
-            walk.setRetainBody(false);
+    public Map<String, VersionInfo> retrievePreviousVersions(Path repositoryPath, Collection<String> revisions) {
+        logger.log(
+            GIT_DEFAULT_LOG_LEVEL,
+            "Retrieving previous versions of {} revisions for Git repository {}",
+            revisions.size(),
+            repositoryPath
+        );
+        try (
+            val repository = FileRepositoryBuilder.create(repositoryPath.resolve(DOT_GIT).toFile());
+            val git = new Git(repository)
+        ) {
+            if (useCommitGraph) {
+                enableCommitGraph(repository);
+            }
+            return retrievePreviousVersions(git, revisions);
+        }
+    }
 
-            val headRef = repository.getRefDatabase().exactRef(HEAD);
-            val headCommit = walk.parseCommit(headRef.getObjectId());
-            walk.markStart(headCommit);
+    @SneakyThrows
+    private Map<String, VersionInfo> retrievePreviousVersions(Git git, Collection<String> revisions) {
+        val fetchRemoteName = getFetchRemoteName(git);
+        if (fetchRemoteName == null && !offline) {
+            return emptyMap();
+        }
 
-            val allRefsByPeeledObjectId = repository.getAllRefsByPeeledObjectId();
+        val repository = git.getRepository();
 
-            val commitQueue = new ArrayDeque<RevCommit>();
-            val addParentsToQueue = sneakyThrows((SneakyThrowsConsumer<RevCommit>) commit -> {
-                for (int parentIndex = 0; parentIndex < commit.getParentCount(); ++parentIndex) {
-                    val parentCommit = commit.getParent(parentIndex);
-                    walk.parseHeaders(parentCommit);
-                    commitQueue.addLast(parentCommit);
-                }
-            });
+        val timeoutBudget = startTimeoutBudget("Git fetch", totalTimeout);
+        val tagsFetchBudget = timeoutBudget.startPhase("Git tags fetch", tagsFetchTimeout);
+        if (fetchRemoteName != null) {
+            fetchTags(git, fetchRemoteName, null, tagsFetchBudget);
+        }
+
+        val tagVersionIndex = TagVersionIndex.build(repository, tagPatterns);
+        if (tagVersionIndex.isEmpty()) {
+            logger.log(
+                GIT_WARN_LOG_LEVEL,
+                "No version tags found for Git repository {}",
+                repository.getDirectory()
+            );
+            return emptyMap();
+        }
 
-            if (ignoreCurrentCommit) {
-                addParentsToQueue.accept(walk.next());
-            } else {
-                commitQueue.addLast(walk.next());
+        PreviousVersionsWalk walk = new PreviousVersionsWalk(repository, tagVersionIndex, ignoreCurrentCommit);
+        Map<String, VersionInfo> versions = walk.walk(revisions);
+
+        int deepenAttempt = 0;
+        TimeoutBudget deepenBudget = null;
+        while (!walk.isResultFinal()
+            && fetchRemoteName != null
+            && isNotEmpty(repository.getObjectDatabase().getShallowCommits())
+        ) {
+            ++deepenAttempt;
+            if (deepenBudget == null) {
+                deepenBudget = timeoutBudget.startPhase("Git deepen", deepenTimeout);
             }
+            deepen(
+                git,
+                fetchRemoteName,
+                tagVersionIndex,
+                deepenAttempt,
+                timeoutBudget,
+                deepenBudget
+            );
+            walk = new PreviousVersionsWalk(repository, tagVersionIndex, ignoreCurrentCommit);
+            versions = walk.walk(revisions);
+        }
 
-            VersionInfo maxRefVersion = null;
-            while (true) {
-                val commit = commitQueue.pollFirst();
-                if (commit == null) {
-                    break;
-                }
+        return versions;
+    }
 
-                if (commit.has(UNINTERESTING)) {
-                    continue;
-                } else {
-                    commit.add(UNINTERESTING);
-                }
+    /**
+     * Retrieves previous versions of all named tag patterns at once, with a separate max version for every pattern.
+     * Shallow repositories are deepened only while the version of some pattern can be changed by fetching more.
+     *
+     * <p>Keys of the result are pattern names. Patterns without a reachable version aren't included.
+     */
+    @VisibleForTesting
+    @SneakyThrows
+    public Map<String, VersionInfo> retrieveByNamedPatterns(Path repositoryPath, Map<String, Pattern> namedPatterns) {
+        logger.log(
+            GIT_DEFAULT_LOG_LEVEL,
+            "Retrieving previous versions of {} tag patterns for Git repository {}",
+            namedPatterns.size(),
+            repositoryPath
+        );
+        try (
+            val repository = FileRepositoryBuilder.create(repositoryPath.resolve(DOT_GIT).toFile());
+            val git = new Git(repository)
+        ) {
+            if (useCommitGraph) {
+                enableCommitGraph(repository);
+            }
+            return retrieveByNamedPatterns(git, namedPatterns);
+        }
+    }
 
-                val tagRefVersion = getTagRefVersion(commit, allRefsByPeeledObjectId);
-                if (tagRefVersion != null) {
-                    if (maxRefVersion == null || maxRefVersion.compareTo(tagRefVersion) <= 0) {
-                        maxRefVersion = tagRefVersion;
-                    }
-                    continue;
-                }
+    @SneakyThrows
+    private Map<String, VersionInfo> retrieveByNamedPatterns(Git git, Map<String, Pattern> namedPatterns) {
+        val fetchRemoteName = getFetchRemoteName(git);
+        if (fetchRemoteName == null && !offline) {
+            return emptyMap();
+        }
+
+        val repository = git.getRepository();
 
-                addParentsToQueue.accept(commit);
+        val timeoutBudget = startTimeoutBudget("Git fetch", totalTimeout);
+        val tagsFetchBudget = timeoutBudget.startPhase("Git tags fetch", tagsFetchTimeout);
+        if (fetchRemoteName != null) {
+            fetchTags(git, fetchRemoteName, null, tagsFetchBudget);
+        }
+
+        val namedIndexes = TagVersionIndex.buildNamed(repository, namedPatterns);
+
+        NamedTagVersionsWalk walk = new NamedTagVersionsWalk(repository, namedIndexes, ignoreCurrentCommit);
+        if (walk.getPatternsCount() == 0) {
+            logger.log(
+                GIT_WARN_LOG_LEVEL,
+                "No version tags found for Git repository {}",
+                repository.getDirectory()
+            );
+            return emptyMap();
+        }
+
+        Map<String, VersionInfo> versions = walk.walk();
+
+        TagVersionIndex allTagsIndex = null;
+        int deepenAttempt = 0;
+        TimeoutBudget deepenBudget = null;
+        while (!walk.isResultFinal()
+            && fetchRemoteName != null
+            && isNotEmpty(repository.getObjectDatabase().getShallowCommits())
+        ) {
+            ++deepenAttempt;
+            if (deepenBudget == null) {
+                deepenBudget = timeoutBudget.startPhase("Git deepen", deepenTimeout);
+                allTagsIndex = TagVersionIndex.merge(namedIndexes.values());
             }
+            deepen(
+                git,
+                fetchRemoteName,
+                allTagsIndex,
+                deepenAttempt,
+                timeoutBudget,
+                deepenBudget
+            );
+            walk = new NamedTagVersionsWalk(repository, namedIndexes, ignoreCurrentCommit);
+            versions = walk.walk();
+        }
 
-            return maxRefVersion;
+        return versions;
+    }
+
+    private void fetchTags(
+        Git git,
+        String fetchRemoteName,
+        @Nullable Collection<Ref> remoteTagRefs,
+        TimeoutBudget timeoutBudget
+    ) {
+        if (incrementalTagsFetch) {
+            if (remoteTagRefs == null) {
+                remoteTagRefs = listRemoteTags(git, fetchRemoteName, timeoutBudget);
+            }
+            fetchNewTags(git, fetchRemoteName, remoteTagRefs, timeoutBudget);
+        } else {
+            fetchAllTags(git, fetchRemoteName, timeoutBudget);
         }
     }
 
+    @SneakyThrows
+    private void fetchAllTags(Git git, String fetchRemoteName, TimeoutBudget timeoutBudget) {
+        timeoutBudget.checkNotExhausted();
+        logger.log(
+            GIT_DEFAULT_LOG_LEVEL,
+            "Fetching tags"
+        );
+        git.fetch()
+            .setRefSpecs(R_TAGS + "*" + ':' + R_TAGS + "*")
+            .setRecurseSubmodules(FetchRecurseSubmodulesMode.NO)
+            .setRemote(fetchRemoteName)
+            .setProgressMonitor(new GradleProgressMonitor(buildCancellationToken, timeoutBudget))
+            .setTimeout(toGitTimeoutSeconds(timeoutBudget.getRemaining()))
+            .call();
+    }
+
+    @SneakyThrows
+    private static Collection<Ref> listRemoteTags(Git git, String fetchRemoteName, TimeoutBudget timeoutBudget) {
+        timeoutBudget.checkNotExhausted();
+        logger.log(
+            GIT_DEFAULT_LOG_LEVEL,
+            "Listing remote tags"
+        );
+        return git.lsRemote()
+            .setRemote(fetchRemoteName)
+            .setTags(true)
+            .setTimeout(toGitTimeoutSeconds(timeoutBudget.getRemaining()))
+            .call();
+    }
+
+    /**
+     * Resolves the version for a shallow repository by remote tags advertisement only, without fetching anything.
+     * Local commits are walked to the advertised peeled tag object IDs.
+     *
+     * <p>Returns {@code null} if the result depends on commits that haven't been fetched yet.
+     */
     @Nullable
-    @SuppressWarnings("java:S3776")
-    private VersionInfo getTagRefVersion(
-        RevCommit commit,
-        Map<AnyObjectId, Set<Ref>> allRefsByPeeledObjectId
+    @SneakyThrows
+    private VersionInfo retrieveFromAdvertisedRefs(Repository repository, Collection<Ref> remoteTagRefs) {
+        val tagVersionIndex = TagVersionIndex.ofAdvertisedRefs(remoteTagRefs, tagPatterns);
+        if (tagVersionIndex.isEmpty()) {
+            return null;
+        }
+
+        val shallowCommits = repository.getObjectDatabase().getShallowCommits();
+        val headCommitId = repository.getRefDatabase().exactRef(HEAD).getObjectId();
+        try (val reader = repository.newObjectReader()) {
+            val walk = new TagVersionWalk(reader, null, shallowCommits, tagVersionIndex, null);
+            val maxRefVersion = ignoreCurrentCommit
+                ? walk.walkFromParentsOf(headCommitId)
+                : walk.walkFrom(headCommitId);
+            if (maxRefVersion == null || !walk.isResultFinal()) {
+                return null;
+            }
+
+            logger.log(
+                GIT_DEFAULT_LOG_LEVEL,
+                "Version {} was resolved by remote tags advertisement",
+                maxRefVersion.getVersion()
+            );
+            return maxRefVersion;
+        }
+    }
+
+    /**
+     * Fetches only the tags that are missing locally or point to a different object.
+     * Tags that point to a different object are force-updated.
+     * Tags that can't be matched by any of {@link #tagPatterns} are never fetched.
+     * If all remote version tags are already known locally, nothing is fetched.
+     */
+    @SneakyThrows
+    private void fetchNewTags(
+        Git git,
+        String fetchRemoteName,
+        Collection<Ref> remoteTagRefs,
+        TimeoutBudget timeoutBudget
     ) {
-        VersionInfo maxTagRefVersion = null;
-
-        val commitRefs = allRefsByPeeledObjectId.getOrDefault(commit.getId(), emptySet());
-        for (val ref : commitRefs) {
-            val refName = ref.getName();
-            if (isNotEmpty(refName) && refName.startsWith(R_TAGS)) {
-                val refShortenName = refName.substring(R_TAGS.length());
-                forTagPatterns:
-                for (val tagPattern : tagPatterns) {
-                    val matcher = tagPattern.matcher(refShortenName);
-                    if (matcher.matches()) {
-                        val versionString = matcher.group("version");
-                        if (isEmpty(versionString)) {
-                            continue;
-                        }
-
-                        val refVersion = VersionInfo.builder()
-                            .version(versionString)
-                            .gitCommitHash(commit.getId().getName())
-                            .gitTag(refShortenName)
-                            .build();
-                        if (maxTagRefVersion == null || maxTagRefVersion.compareTo(refVersion) < 0) {
-                            maxTagRefVersion = refVersion;
-                        }
-                        break forTagPatterns;
-                    }
+        val localTagObjectIds = new LinkedHashMap<String, ObjectId>();
+        for (val localTagRef : git.getRepository().getRefDatabase().getRefsByPrefix(R_TAGS)) {
+            localTagObjectIds.put(localTagRef.getName(), localTagRef.getObjectId());
+        }
+
+        val refSpecs = new ArrayList<RefSpec>();
+        for (val remoteTagRef : remoteTagRefs) {
+            val refName = remoteTagRef.getName();
+            if (!refName.startsWith(R_TAGS)) {
+                continue;
+            }
+
+            val tagName = refName.substring(R_TAGS.length());
+            if (!isVersionTagName(tagName)) {
+                continue;
+            }
+
+            val remoteObjectId = remoteTagRef.getObjectId();
+            val localObjectId = localTagObjectIds.get(refName);
+            if (remoteObjectId == null || remoteObjectId.equals(localObjectId)) {
+                continue;
+            }
+
+            // a tag moved on the remote is rarely a fast-forward update, so it's force-updated
+            refSpecs.add(new RefSpec(refName + ':' + refName).setForceUpdate(localObjectId != null));
+        }
+
+        if (refSpecs.isEmpty()) {
+            logger.log(
+                GIT_DEFAULT_LOG_LEVEL,
+                "All remote version tags have already been fetched"
+            );
+            return;
+        }
+
+        timeoutBudget.checkNotExhausted();
+        logger.log(
+            GIT_DEFAULT_LOG_LEVEL,
+            "Fetching {} new or changed version tags",
+            refSpecs.size()
+        );
+        val fetchResult = git.fetch()
+            .setRefSpecs(refSpecs)
+            .setTagOpt(TagOpt.NO_TAGS)
+            .setRecurseSubmodules(FetchRecurseSubmodulesMode.NO)
+            .setRemote(fetchRemoteName)
+            .setProgressMonitor(new GradleProgressMonitor(buildCancellationToken, timeoutBudget))
+            .setTimeout(toGitTimeoutSeconds(timeoutBudget.getRemaining()))
+            .call();
+
+        for (val update : fetchResult.getTrackingRefUpdates()) {
+            if (!UPDATED_REF_RESULTS.contains(update.getResult())) {
+                logger.log(
+                    GIT_WARN_LOG_LEVEL,
+                    "Tag {} couldn't be updated: {}",
+                    update.getLocalName(),
+                    update.getResult()
+                );
+            }
+        }
+    }
+
+    /**
+     * Deepen attempts share {@code deepenBudget}, and the last attempt that fetches all commits
+     * starts its own phase of {@code timeoutBudget}.
+     *
+     * <p>Only commits are fetched, tags have already been fetched before. So, tag version indexes stay the same.
+     */
+    @SneakyThrows
+    private void deepen(
+        Git git,
+        String fetchRemoteName,
+        TagVersionIndex tagVersionIndex,
+        int attempt,
+        TimeoutBudget timeoutBudget,
+        TimeoutBudget deepenBudget
+    ) {
+        val fetch = git.fetch()
+            .setTagOpt(TagOpt.NO_TAGS)
+            .setRecurseSubmodules(FetchRecurseSubmodulesMode.NO)
+            .setRemote(fetchRemoteName);
+
+        TimeoutBudget fetchBudget = deepenBudget;
+
+        val deepenSince = deepenStrategy == SINCE_NEWEST_TAG && attempt <= maxDeepenAttempts
+            ? getTaggedCommitTime(git.getRepository(), tagVersionIndex, attempt - 1)
+            : null;
+        val deepenDepth = getDeepenDepth(attempt);
+        if (deepenSince != null) {
+            logger.log(
+                GIT_WARN_LOG_LEVEL,
+                "The repository was cloned/fetched partially, and existing local commits don't have version tags"
+                    + " => fetching commits since {}",
+                deepenSince
+            );
+            fetch.setShallowSince(deepenSince);
+
+        } else if (deepenDepth > 0) {
+            logger.log(
+                GIT_WARN_LOG_LEVEL,
+                "The repository was cloned/fetched partially, and existing local commits don't have version tags"
+                    + " => fetching with {} depth",
+                deepenDepth
+            );
+            fetch.setDepth(deepenDepth);
+
+        } else {
+            logger.log(
+                GIT_WARN_LOG_LEVEL,
+                "The repository was fetched partially, and existing local commits don't have version tags"
+                    + " => fetching all commits"
+            );
+            fetch.setUnshallow(true);
+            fetchBudget = timeoutBudget.startPhase("Git unshallow", unshallowTimeout);
+        }
+
+        fetchBudget.checkNotExhausted();
+        fetch
+            .setProgressMonitor(new GradleProgressMonitor(buildCancellationToken, fetchBudget))
+            .setTimeout(toGitTimeoutSeconds(fetchBudget.getRemaining()))
+            .call();
+    }
+
+    /**
+     * Returns the absolute depth for the deepen attempt, or {@code 0} if the repository should be unshallowed.
+     */
+    private int getDeepenDepth(int attempt) {
+        if (attempt > maxDeepenAttempts) {
+            return 0;
+        }
+
+        val initialDepth = initialDeepenDepth != null
+            ? initialDeepenDepth
+            : deepenStrategy.getDefaultInitialDeepenDepth();
+        switch (deepenStrategy) {
+            case FIXED:
+                return attempt == 1 ? initialDepth : 0;
+            case EXPONENTIAL:
+                val depth = (long) initialDepth << min(attempt - 1, Integer.SIZE);
+                return depth <= Integer.MAX_VALUE ? (int) depth : 0;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Returns the commit time of the tagged commit with the given index, ordered from the newest.
+     * Returns {@code null} if there are fewer tagged commits.
+     */
+    @Nullable
+    @SneakyThrows
+    private static Instant getTaggedCommitTime(Repository repository, TagVersionIndex tagVersionIndex, int index) {
+        val commitTimes = new TreeSet<Integer>(reverseOrder());
+        try (val walk = new RevWalk(repository)) {
+            walk.setRetainBody(false);
+            for (val objectId : tagVersionIndex.getObjectIdVersions().keySet()) {
+                val object = walk.parseAny(objectId);
+                if (object instanceof RevCommit) {
+                    commitTimes.add(((RevCommit) object).getCommitTime());
                 }
             }
         }
 
-        return maxTagRefVersion;
+        return commitTimes.stream()
+            .skip(index)
+            .findFirst()
+            .map(Instant::ofEpochSecond)
+            .orElse(null);
+    }
+
+    private boolean isVersionTagName(String tagName) {
+        for (val tagPattern : tagPatterns) {
+            val matcher = tagPattern.matcher(tagName);
+            if (matcher.matches() && isNotEmpty(matcher.group("version"))) {
+                return true;
+            }
+        }
+        return false;
     }
 
+    @Nullable
     @SneakyThrows
-    private Map<ObjectId, SortedSet<Version>> collectObjectIdVersions(Repository repository) {
-        val objectIdVersions = new LinkedHashMap<ObjectId, SortedSet<Version>>();
-
-        val tagRefs = repository.getRefDatabase().getRefsByPrefix(R_TAGS);
-        for (val tagRef : tagRefs) {
-            val tagName = shortenRefName(tagRef.getName());
-            forTagPatterns:
-            for (val tagPattern : tagPatterns) {
-                val matcher = tagPattern.matcher(tagName);
-                if (matcher.matches()) {
-                    val versionString = matcher.group("version");
-                    if (versionString == null) {
-                        logger.warn(
-                            "Capturing group `version` was not matched for pattern /{}/ and Git tag `{}`",
-                            tagPattern,
-                            tagName
-                        );
-                    } else if (versionString.isEmpty()) {
-                        logger.warn(
-                            "Capturing group `version` is empty for pattern /{}/ and Git tag `{}`",
-                            tagPattern,
-                            tagName
-                        );
-                    } else {
-                        val objectId = getPeeledObjectId(repository, tagRef);
-                        val version = Version.parse(versionString);
-                        objectIdVersions.computeIfAbsent(objectId, __ -> new TreeSet<>()).add(version);
-                        break forTagPatterns;
-                    }
+    private VersionInfo retrieveImpl(
+        Repository repository,
+        TagVersionIndex tagVersionIndex,
+        @Nullable PersistentCommitVersionIndex persistentIndex
+    ) {
+        val shallowCommits = repository.getObjectDatabase().getShallowCommits();
+        val headCommitId = repository.getRefDatabase().exactRef(HEAD).getObjectId();
+
+        try (val reader = repository.newObjectReader()) {
+            val commitGraph = isEmpty(shallowCommits) ? getCommitGraph(reader) : null;
+            val walk = new TagVersionWalk(reader, commitGraph, shallowCommits, tagVersionIndex, persistentIndex);
+
+            val maxRefVersion = ignoreCurrentCommit
+                ? walk.walkFromParentsOf(headCommitId)
+                : walk.walkFrom(headCommitId);
+
+            if (maxRefVersion != null
+                && persistentIndex != null
+                && isEmpty(shallowCommits)
+            ) {
+                val isHeadCommitTagged = tagVersionIndex.get(headCommitId) != null;
+                if (!ignoreCurrentCommit || !isHeadCommitTagged) {
+                    persistentIndex.put(headCommitId, maxRefVersion);
+                }
+                val headParentIds = walk.getParents(headCommitId);
+                if (ignoreCurrentCommit && headParentIds.size() == 1) {
+                    persistentIndex.put(headParentIds.get(0), maxRefVersion);
                 }
             }
+
+            return maxRefVersion;
         }
+    }
 
-        return objectIdVersions;
+    /**
+     * JGit reads the commit-graph file only if {@code core.commitGraph} is enabled.
+     * The option is enabled in memory only, the repository config file isn't changed.
+     */
+    private static void enableCommitGraph(Repository repository) {
+        repository.getConfig().setBoolean(CONFIG_CORE_SECTION, null, CONFIG_COMMIT_GRAPH, true);
     }
 
+    /**
+     * Commit-graph files aren't consistent with shallow repositories, so they must not be used for them.
+     */
+    @Nullable
     @SneakyThrows
-    @SuppressWarnings("java:S2583")
-    private static ObjectId getPeeledObjectId(Repository repository, Ref ref) {
-        val peeledRef = defaultValue(repository.getRefDatabase().peel(ref), ref);
-        return defaultValue(peeledRef.getPeeledObjectId(), peeledRef.getObjectId());
+    private static CommitGraph getCommitGraph(ObjectReader reader) {
+        val commitGraph = reader.getCommitGraph().orElse(null);
+        if (commitGraph != null) {
+            logger.log(
+                GIT_DEFAULT_LOG_LEVEL,
+                "Using commit-graph with {} commits",
+                commitGraph.getCommitCnt()
+            );
+        }
+        return commitGraph;
+    }
+
+    /**
+     * Returns {@code null} in {@link #offline} mode, or if no remotes are configured.
+     */
+    @Nullable
+    private String getFetchRemoteName(Git git) {
+        if (offline) {
+            logger.log(
+                GIT_WARN_LOG_LEVEL,
+                "Offline mode: only local tags and commits of Git repository {} are used",
+                git.getRepository().getDirectory()
+            );
+            return null;
+        }
+
+        val fetchRemote = getFetchRemote(git);
+        if (fetchRemote == null) {
+            logger.log(
+                GIT_ERROR_LOG_LEVEL,
+                "No remotes are configured for Git repository {}",
+                git.getRepository().getDirectory()
+            );
+            return null;
+        }
+
+        return fetchRemote.getName();
     }
 
     @Nullable
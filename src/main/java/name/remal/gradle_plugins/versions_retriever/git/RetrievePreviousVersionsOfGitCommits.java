@@ -0,0 +1,38 @@
+package name.remal.gradle_plugins.versions_retriever.git;
+
+import static name.remal.gradle_plugins.versions_retriever.git.RetrievePreviousVersionsOfGitCommitsAction.REVISIONS;
+
+import java.io.File;
+import java.util.ArrayList;
+import lombok.val;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.UntrackedTask;
+
+/**
+ * Retrieves previous versions of many commits at once, in a single walk.
+ * The result properties file has {@code <commit hash>.version} property for every commit with a reachable version.
+ */
+@UntrackedTask(because = "This task should always fetch from remote Git repository")
+public abstract class RetrievePreviousVersionsOfGitCommits extends AbstractRetrieveVersionsFromGit {
+
+    /**
+     * Revisions to retrieve previous versions for. Every revision can be either a single revision,
+     * or a {@code <from>..<to>} range of commits that are reachable from {@code <to>}, but not from {@code <from>}.
+     */
+    @Input
+    public abstract ListProperty<String> getRevisions();
+
+    @Override
+    protected void retrieveImpl(File resultPropertiesFile) {
+        val settings = createGitRetrievalSettings(resultPropertiesFile);
+        settings.put(REVISIONS, new ArrayList<>(getRevisions().get()));
+        executeRetrieval(
+            isInProcessExecution(),
+            RetrievePreviousVersionsOfGitCommitsInProcess.class,
+            RetrievePreviousVersionsOfGitCommitsAction.class,
+            settings
+        );
+    }
+
+}
@@ -0,0 +1,81 @@
+package name.remal.gradle_plugins.versions_retriever.git;
+
+import static java.nio.file.Files.write;
+import static java.util.stream.Collectors.toList;
+import static lombok.AccessLevel.PUBLIC;
+import static name.remal.gradle_plugins.toolkit.PathUtils.createParentDirectories;
+import static name.remal.gradle_plugins.toolkit.PathUtils.normalizePath;
+import static name.remal.gradle_plugins.toolkit.git.GitUtils.findGitRepositoryRootFor;
+import static name.remal.gradle_plugins.versions_retriever.VersionInfo.storeVersionInfos;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.createRetrieverBuilder;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.getProjectDirectory;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.getResultPropertiesFile;
+import static name.remal.gradle_plugins.versions_retriever.git.GitRetrievalSettings.getTagPatterns;
+import static name.remal.gradle_plugins.versions_retriever.git.GitUtils.GIT_ERROR_LOG_LEVEL;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import javax.inject.Inject;
+import lombok.CustomLog;
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.gradle.api.GradleException;
+import org.gradle.workers.WorkAction;
+
+@NoArgsConstructor(access = PUBLIC, onConstructor_ = {@Inject})
+@CustomLog
+abstract class RetrievePreviousVersionsOfGitCommitsAction
+    implements WorkAction<GitRetrievalActionParams> {
+
+    static final String REVISIONS = "revisions";
+
+
+    @Override
+    public void execute() {
+        retrievePreviousVersionsOfGitCommits(getParameters().getSettings().get());
+    }
+
+    /**
+     * Retrieves previous versions of all commits of the revisions, and writes them to the result file,
+     * by commit hashes.
+     * It's shared by the work action and {@link RetrievePreviousVersionsOfGitCommitsInProcess in-process} execution.
+     */
+    @SneakyThrows
+    @SuppressWarnings("unchecked")
+    static void retrievePreviousVersionsOfGitCommits(Map<String, Object> settings) {
+        val resultPropertiesPath = normalizePath(getResultPropertiesFile(settings));
+        createParentDirectories(resultPropertiesPath);
+
+        val projectDir = getProjectDirectory(settings);
+        val repositoryPath = findGitRepositoryRootFor(projectDir.toPath());
+        if (repositoryPath == null) {
+            logger.log(
+                GIT_ERROR_LOG_LEVEL,
+                "Git repository root dir couldn't be found for {}",
+                projectDir
+            );
+            write(resultPropertiesPath, new byte[0]);
+            return;
+        }
+
+        val tagPatterns = getTagPatterns(settings).stream()
+            .map(Pattern::compile)
+            .collect(toList());
+        if (tagPatterns.isEmpty()) {
+            throw new GradleException("Tag patterns can't be empty");
+        }
+        val revisions = (List<String>) settings.get(REVISIONS);
+        if (revisions.isEmpty()) {
+            throw new GradleException("Revisions can't be empty");
+        }
+
+        val retriever = createRetrieverBuilder(settings)
+            .tagPatterns(tagPatterns)
+            .build();
+        val versions = retriever.retrievePreviousVersions(repositoryPath, revisions);
+        storeVersionInfos(versions, resultPropertiesPath);
+    }
+
+}
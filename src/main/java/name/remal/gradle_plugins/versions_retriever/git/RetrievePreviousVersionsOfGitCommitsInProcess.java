@@ -0,0 +1,19 @@
+package name.remal.gradle_plugins.versions_retriever.git;
+
+import static name.remal.gradle_plugins.versions_retriever.git.RetrievePreviousVersionsOfGitCommitsAction.retrievePreviousVersionsOfGitCommits;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * In-process alternative of {@link RetrievePreviousVersionsOfGitCommitsAction}.
+ * It's instantiated in a {@link JGitClassLoaders JGit class loader}, so its settings have JDK types only.
+ */
+class RetrievePreviousVersionsOfGitCommitsInProcess implements Consumer<Map<String, Object>> {
+
+    @Override
+    public void accept(Map<String, Object> settings) {
+        retrievePreviousVersionsOfGitCommits(settings);
+    }
+
+}
@@ -0,0 +1,221 @@
+package name.remal.gradle_plugins.versions_retriever.git;
+
+import static com.google.common.base.Suppliers.memoize;
+import static java.util.Collections.singletonList;
+import static name.remal.gradle_plugins.toolkit.ObjectUtils.defaultValue;
+import static org.eclipse.jgit.lib.Constants.R_TAGS;
+import static org.eclipse.jgit.lib.Repository.shortenRefName;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+import lombok.CustomLog;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.val;
+import name.remal.gradle_plugins.versions_retriever.VersionInfo;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Immutable index of peeled tag object IDs to the max version of the tags matched by tag patterns.
+ *
+ * <p>Only {@code refs/tags/*} refs are read. Tag patterns are matched and versions are parsed only once,
+ * when the index is built. Only matched tags are peeled, and only if their peeled object ID is not known yet.
+ */
+@CustomLog
+@RequiredArgsConstructor
+class TagVersionIndex {
+
+    @SneakyThrows
+    public static TagVersionIndex build(Repository repository, List<Pattern> tagPatterns) {
+        val tagVersions = new LinkedHashMap<String, VersionInfo>();
+
+        val tagRefs = repository.getRefDatabase().getRefsByPrefix(R_TAGS);
+        try (val walk = new RevWalk(repository)) {
+            for (val tagRef : tagRefs) {
+                val version = createVersion(tagPatterns, tagRef, ref -> getPeeledObjectId(walk, ref));
+                if (version != null) {
+                    tagVersions.put(tagRef.getName(), version);
+                }
+            }
+        }
+
+        return create(tagVersions);
+    }
+
+    /**
+     * Builds indexes of named tag patterns in a single pass over tag refs.
+     * A tag matched by multiple patterns is peeled only once.
+     */
+    @SneakyThrows
+    public static Map<String, TagVersionIndex> buildNamed(
+        Repository repository,
+        Map<String, Pattern> namedTagPatterns
+    ) {
+        Map<String, Map<String, VersionInfo>> namedTagVersions = new LinkedHashMap<>();
+        namedTagPatterns.keySet().forEach(name -> namedTagVersions.put(name, new LinkedHashMap<>()));
+
+        val tagRefs = repository.getRefDatabase().getRefsByPrefix(R_TAGS);
+        try (val walk = new RevWalk(repository)) {
+            for (val tagRef : tagRefs) {
+                val peeledObjectId = memoize(() -> getPeeledObjectId(walk, tagRef));
+                namedTagPatterns.forEach((name, tagPattern) -> {
+                    val version = createVersion(singletonList(tagPattern), tagRef, __ -> peeledObjectId.get());
+                    if (version != null) {
+                        namedTagVersions.get(name).put(tagRef.getName(), version);
+                    }
+                });
+            }
+        }
+
+        Map<String, TagVersionIndex> namedIndexes = new LinkedHashMap<>();
+        namedTagVersions.forEach((name, tagVersions) -> namedIndexes.put(name, create(tagVersions)));
+        return namedIndexes;
+    }
+
+    /**
+     * Merges indexes into one. If an object ID is in multiple indexes, its max version is used.
+     */
+    public static TagVersionIndex merge(Collection<TagVersionIndex> indexes) {
+        val objectIdVersions = new LinkedHashMap<ObjectId, VersionInfo>();
+        VersionInfo maxVersion = null;
+        for (val index : indexes) {
+            index.objectIdVersions.forEach((objectId, version) ->
+                objectIdVersions.merge(objectId, version, TagVersionIndex::max)
+            );
+            if (index.maxVersion != null) {
+                maxVersion = maxVersion != null ? max(maxVersion, index.maxVersion) : index.maxVersion;
+            }
+        }
+
+        return new TagVersionIndex(ImmutableMap.copyOf(objectIdVersions), maxVersion);
+    }
+
+    /**
+     * Builds the index from advertised remote refs, without reading any objects.
+     * Annotated tags are matched by their advertised peeled object IDs.
+     */
+    public static TagVersionIndex ofAdvertisedRefs(Collection<Ref> advertisedRefs, List<Pattern> tagPatterns) {
+        val tagVersions = new LinkedHashMap<String, VersionInfo>();
+        for (val ref : advertisedRefs) {
+            if (!ref.getName().startsWith(R_TAGS) || ref.getObjectId() == null) {
+                continue;
+            }
+
+            val version = createVersion(tagPatterns, ref, TagVersionIndex::getAdvertisedPeeledObjectId);
+            if (version != null) {
+                tagVersions.put(ref.getName(), version);
+            }
+        }
+
+        return create(tagVersions);
+    }
+
+    private static TagVersionIndex create(Map<String, VersionInfo> tagVersions) {
+        val objectIdVersions = new LinkedHashMap<ObjectId, VersionInfo>();
+        VersionInfo maxVersion = null;
+        for (val version : tagVersions.values()) {
+            val objectId = ObjectId.fromString(version.getGitCommitHash());
+            objectIdVersions.merge(objectId, version, TagVersionIndex::max);
+            maxVersion = maxVersion != null ? max(maxVersion, version) : version;
+        }
+
+        return new TagVersionIndex(ImmutableMap.copyOf(objectIdVersions), maxVersion);
+    }
+
+
+    private final Map<ObjectId, VersionInfo> objectIdVersions;
+
+    @Nullable
+    private final VersionInfo maxVersion;
+
+    public boolean isEmpty() {
+        return objectIdVersions.isEmpty();
+    }
+
+    @Nullable
+    public VersionInfo get(AnyObjectId objectId) {
+        return objectIdVersions.get(objectId);
+    }
+
+    public Map<ObjectId, VersionInfo> getObjectIdVersions() {
+        return objectIdVersions;
+    }
+
+    /**
+     * Returns the max version among all matched tags.
+     */
+    @Nullable
+    public VersionInfo getMaxVersion() {
+        return maxVersion;
+    }
+
+    @Nullable
+    private static VersionInfo createVersion(
+        List<Pattern> tagPatterns,
+        Ref tagRef,
+        Function<Ref, ObjectId> peeledObjectIdGetter
+    ) {
+        val tagName = shortenRefName(tagRef.getName());
+        for (val tagPattern : tagPatterns) {
+            val matcher = tagPattern.matcher(tagName);
+            if (matcher.matches()) {
+                val versionString = matcher.group("version");
+                if (versionString == null) {
+                    logger.warn(
+                        "Capturing group `version` was not matched for pattern /{}/ and Git tag `{}`",
+                        tagPattern,
+                        tagName
+                    );
+                } else if (versionString.isEmpty()) {
+                    logger.warn(
+                        "Capturing group `version` is empty for pattern /{}/ and Git tag `{}`",
+                        tagPattern,
+                        tagName
+                    );
+                } else {
+                    val objectId = peeledObjectIdGetter.apply(tagRef);
+                    return VersionInfo.builder()
+                        .version(versionString)
+                        .gitCommitHash(objectId.getName())
+                        .gitTag(tagName)
+                        .build();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static VersionInfo max(VersionInfo version1, VersionInfo version2) {
+        return version1.compareTo(version2) >= 0 ? version1 : version2;
+    }
+
+    /**
+     * Packed refs usually have their peeled object IDs already. Other refs are peeled with a shared
+     * {@link RevWalk}, instead of {@link org.eclipse.jgit.lib.RefDatabase#peel(Ref)}
+     * that opens a new object reader for every ref.
+     */
+    @SneakyThrows
+    private static ObjectId getPeeledObjectId(RevWalk walk, Ref ref) {
+        if (ref.isPeeled()) {
+            return defaultValue(ref.getPeeledObjectId(), ref.getObjectId());
+        }
+
+        val object = walk.parseAny(ref.getObjectId());
+        return walk.peel(object).copy();
+    }
+
+    private static ObjectId getAdvertisedPeeledObjectId(Ref ref) {
+        return defaultValue(ref.getPeeledObjectId(), ref.getObjectId());
+    }
+
+}
@@ -0,0 +1,273 @@
+package name.remal.gradle_plugins.versions_retriever.git;
+
+import static java.lang.Math.max;
+import static java.util.Arrays.binarySearch;
+import static java.util.Arrays.copyOf;
+import static java.util.Collections.emptyList;
+import static name.remal.gradle_plugins.versions_retriever.git.TaggedCommitGenerations.GENERATION_UNKNOWN;
+import static org.eclipse.jgit.lib.Constants.OBJ_COMMIT;
+import static org.eclipse.jgit.lib.Constants.encodeASCII;
+import static org.eclipse.jgit.util.RawParseUtils.match;
+import static org.eclipse.jgit.util.RawParseUtils.nextLF;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+import lombok.SneakyThrows;
+import lombok.val;
+import name.remal.gradle_plugins.versions_retriever.VersionInfo;
+import org.eclipse.jgit.internal.storage.commitgraph.CommitGraph;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+import org.eclipse.jgit.lib.ObjectReader;
+
+/**
+ * Breadth-first walk from a commit to the max version of the nearest tagged commits.
+ *
+ * <p>The walk doesn't create {@link org.eclipse.jgit.revwalk.RevCommit} objects.
+ * Commits from the commit-graph are tracked by their graph positions in a {@link BitSet} and an {@code int} queue.
+ * Other commits are tracked by their object IDs, and their parents are read from raw commit objects.
+ *
+ * <p>Commit-graph is closed under reachability, so the walk never leaves the commit-graph once it has entered it.
+ */
+class TagVersionWalk {
+
+    private static final byte[] PARENT_PREFIX = encodeASCII("parent ");
+
+
+    private final ObjectReader reader;
+
+    @Nullable
+    private final CommitGraph commitGraph;
+
+    private final Set<ObjectId> shallowCommits;
+
+    private final TagVersionIndex tagVersionIndex;
+
+    @Nullable
+    private final PersistentCommitVersionIndex persistentIndex;
+
+    @Nullable
+    private final TaggedCommitGenerations taggedGenerations;
+
+    private final int[] versionGraphPositions;
+
+    private final VersionInfo[] graphPositionVersions;
+
+    private final ObjectIdSubclassMap<ObjectId> visitedCommitIds = new ObjectIdSubclassMap<>();
+
+    private final ArrayDeque<ObjectId> commitIdQueue = new ArrayDeque<>();
+
+    private final BitSet visitedGraphPositions = new BitSet();
+
+    private int[] graphPositionQueue = new int[64];
+
+    private int graphPositionQueueHead;
+
+    private int graphPositionQueueTail;
+
+    @Nullable
+    private VersionInfo maxRefVersion;
+
+    private boolean stoppedEarly;
+
+    private boolean shallowCommitReached;
+
+    public TagVersionWalk(
+        ObjectReader reader,
+        @Nullable CommitGraph commitGraph,
+        Set<ObjectId> shallowCommits,
+        TagVersionIndex tagVersionIndex,
+        @Nullable PersistentCommitVersionIndex persistentIndex
+    ) {
+        this.reader = reader;
+        this.commitGraph = commitGraph;
+        this.shallowCommits = shallowCommits;
+        this.tagVersionIndex = tagVersionIndex;
+        this.persistentIndex = persistentIndex;
+        this.taggedGenerations = commitGraph != null
+            ? TaggedCommitGenerations.of(commitGraph, tagVersionIndex)
+            : null;
+
+        val positionVersions = new TreeMap<Integer, VersionInfo>();
+        if (commitGraph != null) {
+            if (persistentIndex != null) {
+                addGraphPositionVersions(commitGraph, persistentIndex.getEntries(), positionVersions);
+            }
+            // tag versions take precedence over indexed versions
+            addGraphPositionVersions(commitGraph, tagVersionIndex.getObjectIdVersions(), positionVersions);
+        }
+        this.versionGraphPositions = positionVersions.keySet().stream().mapToInt(Integer::intValue).toArray();
+        this.graphPositionVersions = positionVersions.values().toArray(new VersionInfo[0]);
+    }
+
+    /**
+     * Walks from the commit.
+     * Returns the max version of the nearest tagged commits, or {@code null} if no tagged commits are reachable.
+     */
+    @Nullable
+    public VersionInfo walkFrom(AnyObjectId commitId) {
+        addToQueue(commitId);
+        return walk();
+    }
+
+    /**
+     * Walks from parents of the commit, the commit itself is skipped.
+     */
+    @Nullable
+    public VersionInfo walkFromParentsOf(AnyObjectId commitId) {
+        getWalkParents(commitId).forEach(this::addToQueue);
+        return walk();
+    }
+
+    /**
+     * Returns {@code true} if the walk result can't be changed by fetching more commits.
+     * It's so if no higher version can be found, or if no shallow commits were reached by the walk.
+     */
+    public boolean isResultFinal() {
+        return stoppedEarly || !shallowCommitReached;
+    }
+
+    /**
+     * Returns parents of the commit. Shallow commits don't have parents.
+     */
+    @SneakyThrows
+    public List<ObjectId> getParents(AnyObjectId commitId) {
+        if (shallowCommits.contains(commitId)) {
+            return emptyList();
+        }
+
+        val raw = reader.open(commitId, OBJ_COMMIT).getCachedBytes();
+        val parents = new ArrayList<ObjectId>(1);
+        // the first header line is always the tree line, parent lines follow it
+        int ptr = nextLF(raw, 0);
+        while (match(raw, ptr, PARENT_PREFIX) >= 0) {
+            parents.add(ObjectId.fromString(raw, ptr + PARENT_PREFIX.length));
+            ptr = nextLF(raw, ptr);
+        }
+        return parents;
+    }
+
+
+    private List<ObjectId> getWalkParents(AnyObjectId commitId) {
+        if (shallowCommits.contains(commitId)) {
+            shallowCommitReached = true;
+        }
+        return getParents(commitId);
+    }
+
+    @Nullable
+    private VersionInfo walk() {
+        val maxTagVersion = tagVersionIndex.getMaxVersion();
+
+        while (!commitIdQueue.isEmpty()) {
+            val commitId = commitIdQueue.pollFirst();
+            VersionInfo commitVersion = tagVersionIndex.get(commitId);
+            if (commitVersion == null && persistentIndex != null) {
+                commitVersion = persistentIndex.get(commitId);
+            }
+            if (commitVersion != null) {
+                if (onVersionFound(commitVersion, maxTagVersion)) {
+                    return maxRefVersion;
+                }
+                continue;
+            }
+
+            getWalkParents(commitId).forEach(this::addToQueue);
+        }
+
+        while (graphPositionQueueHead < graphPositionQueueTail) {
+            val graphPosition = graphPositionQueue[graphPositionQueueHead++];
+            val versionIndex = binarySearch(versionGraphPositions, graphPosition);
+            if (versionIndex >= 0) {
+                if (onVersionFound(graphPositionVersions[versionIndex], maxTagVersion)) {
+                    return maxRefVersion;
+                }
+                continue;
+            }
+
+            val parentPositions = commitGraph.getCommitData(graphPosition).getParents();
+            for (val parentPosition : parentPositions) {
+                addGraphPositionToQueue(parentPosition);
+            }
+        }
+
+        return maxRefVersion;
+    }
+
+    /**
+     * Returns {@code true} if no higher version can be found.
+     */
+    private boolean onVersionFound(VersionInfo commitVersion, @Nullable VersionInfo maxTagVersion) {
+        if (maxRefVersion == null || maxRefVersion.compareTo(commitVersion) <= 0) {
+            maxRefVersion = commitVersion;
+            stoppedEarly = maxTagVersion != null && maxRefVersion.compareTo(maxTagVersion) >= 0;
+            return stoppedEarly;
+        }
+        return false;
+    }
+
+    private void addToQueue(AnyObjectId commitId) {
+        if (commitGraph != null) {
+            val graphPosition = commitGraph.findGraphPosition(commitId);
+            if (graphPosition >= 0) {
+                addGraphPositionToQueue(graphPosition);
+                return;
+            }
+        }
+
+        if (visitedCommitIds.contains(commitId)) {
+            return;
+        }
+        val commitObjectId = commitId.copy();
+        visitedCommitIds.add(commitObjectId);
+        commitIdQueue.addLast(commitObjectId);
+    }
+
+    /**
+     * Commits that can't reach a tagged commit with a version higher than {@link #maxRefVersion}
+     * are not added to the queue.
+     */
+    @SuppressWarnings("java:S2259")
+    private void addGraphPositionToQueue(int graphPosition) {
+        if (visitedGraphPositions.get(graphPosition)) {
+            return;
+        }
+        visitedGraphPositions.set(graphPosition);
+
+        val generation = TaggedCommitGenerations.getGeneration(commitGraph, graphPosition);
+        if (generation != GENERATION_UNKNOWN) {
+            val maxReachableVersion = taggedGenerations.getMaxReachableVersion(generation);
+            if (maxReachableVersion == null
+                || (maxRefVersion != null && maxReachableVersion.compareTo(maxRefVersion) <= 0)
+            ) {
+                return;
+            }
+        }
+
+        if (graphPositionQueueTail == graphPositionQueue.length) {
+            graphPositionQueue = copyOf(graphPositionQueue, max(graphPositionQueue.length * 2, 64));
+        }
+        graphPositionQueue[graphPositionQueueTail++] = graphPosition;
+    }
+
+    private static void addGraphPositionVersions(
+        CommitGraph commitGraph,
+        Map<ObjectId, VersionInfo> objectIdVersions,
+        Map<Integer, VersionInfo> positionVersions
+    ) {
+        objectIdVersions.forEach((objectId, version) -> {
+            val graphPosition = commitGraph.findGraphPosition(objectId);
+            if (graphPosition >= 0) {
+                positionVersions.put(graphPosition, version);
+            }
+        });
+    }
+
+}
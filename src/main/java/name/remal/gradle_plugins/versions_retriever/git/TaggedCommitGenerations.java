@@ -0,0 +1,81 @@
+package name.remal.gradle_plugins.versions_retriever.git;
+
+import static java.util.Arrays.binarySearch;
+
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import name.remal.gradle_plugins.versions_retriever.VersionInfo;
+import org.eclipse.jgit.internal.storage.commitgraph.CommitGraph;
+
+/**
+ * Max versions of tagged commits by commit-graph generation numbers.
+ *
+ * <p>If commit A is an ancestor of commit B, A's generation number is less than B's one.
+ * So, a commit with generation number G can reach only tagged commits with generation number less than or equal to G.
+ *
+ * <p>Commit-graph is closed under reachability,
+ * so tagged commits that aren't in the commit-graph can't be reached from the commit-graph commits.
+ */
+@RequiredArgsConstructor
+class TaggedCommitGenerations {
+
+    public static final int GENERATION_UNKNOWN = Integer.MAX_VALUE;
+
+    public static TaggedCommitGenerations of(CommitGraph commitGraph, TagVersionIndex tagVersionIndex) {
+        val generationVersions = new TreeMap<Integer, VersionInfo>();
+        tagVersionIndex.getObjectIdVersions().forEach((objectId, version) -> {
+            val graphPosition = commitGraph.findGraphPosition(objectId);
+            val generation = graphPosition >= 0 ? getGeneration(commitGraph, graphPosition) : GENERATION_UNKNOWN;
+            if (generation != GENERATION_UNKNOWN) {
+                generationVersions.merge(generation, version, (v1, v2) -> v1.compareTo(v2) >= 0 ? v1 : v2);
+            }
+        });
+
+        val generations = new int[generationVersions.size()];
+        val maxVersions = new VersionInfo[generationVersions.size()];
+        int index = 0;
+        VersionInfo maxVersion = null;
+        for (val entry : generationVersions.entrySet()) {
+            if (maxVersion == null || maxVersion.compareTo(entry.getValue()) < 0) {
+                maxVersion = entry.getValue();
+            }
+            generations[index] = entry.getKey();
+            maxVersions[index] = maxVersion;
+            ++index;
+        }
+
+        return new TaggedCommitGenerations(generations, maxVersions);
+    }
+
+
+    private final int[] generations;
+
+    private final VersionInfo[] maxVersions;
+
+    /**
+     * Returns the max version of tagged commits that can be reached from a commit with the generation number.
+     * Returns {@code null} if no tagged commits can be reached.
+     */
+    @Nullable
+    public VersionInfo getMaxReachableVersion(int generation) {
+        int index = binarySearch(generations, generation);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return index >= 0 ? maxVersions[index] : null;
+    }
+
+
+    public static int getGeneration(CommitGraph commitGraph, int graphPosition) {
+        val generation = commitGraph.getCommitData(graphPosition).getGeneration();
+        if (generation <= 0) {
+            // generation numbers were not computed
+            return GENERATION_UNKNOWN;
+        }
+
+        return generation;
+    }
+
+}
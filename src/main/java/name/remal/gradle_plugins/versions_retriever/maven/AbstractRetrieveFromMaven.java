@@ -1,13 +1,22 @@
 package name.remal.gradle_plugins.versions_retriever.maven;
 
+import static java.util.stream.Collectors.toList;
 import static name.remal.gradle_plugins.toolkit.PropertyUtils.getFinalized;
+import static name.remal.gradle_plugins.versions_retriever.maven.MavenHttpClientService.MAVEN_HTTP_CLIENT_SERVICE_NAME;
+import static name.remal.gradle_plugins.versions_retriever.maven.MavenUtils.READ_TIMEOUT;
+import static name.remal.gradle_plugins.versions_retriever.maven.MavenUtils.TOTAL_TIMEOUT;
+import static name.remal.gradle_plugins.versions_retriever.maven.MavenUtils.normalizeRepositoryUri;
 
+import java.io.File;
+import java.time.Duration;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import javax.inject.Inject;
 import lombok.val;
 import name.remal.gradle_plugins.versions_retriever.AbstractRetrieveVersions;
 import org.gradle.api.Action;
+import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
@@ -36,6 +45,65 @@ public abstract class AbstractRetrieveFromMaven extends AbstractRetrieveVersions
         getWithSnapshots().convention(false);
     }
 
+    /**
+     * If enabled, repositories marked as {@link MavenRepository#getMirror() mirrors} are requested at once,
+     * the first valid metadata is used, and other in-flight requests to mirrors are cancelled.
+     */
+    @Input
+    public abstract Property<Boolean> getHedgeMirrors();
+
+    {
+        getHedgeMirrors().convention(false);
+    }
+
+    /**
+     * The time budget of all requests to Maven repositories.
+     * The task fails as soon as the budget is exhausted.
+     */
+    @Internal
+    public abstract Property<Duration> getTotalRequestsTimeout();
+
+    {
+        getTotalRequestsTimeout().convention(TOTAL_TIMEOUT);
+    }
+
+    /**
+     * The timeout of a single request, limited by the remaining {@link #getTotalRequestsTimeout() total budget}.
+     * A repository that doesn't respond within this timeout is skipped.
+     */
+    @Internal
+    public abstract Property<Duration> getRequestTimeout();
+
+    {
+        getRequestTimeout().convention(READ_TIMEOUT);
+    }
+
+    /**
+     * Directory of the persistent Maven metadata cache. The cache isn't used if the directory isn't set.
+     */
+    @Internal
+    public abstract DirectoryProperty getMetadataCacheDirectory();
+
+    {
+        val gradleUserHomeDir = getProject().getGradle().getGradleUserHomeDir();
+        getMetadataCacheDirectory().convention(getProjectLayout().dir(getProviderFactory().provider(() ->
+            new File(gradleUserHomeDir, "caches/versions-retriever/maven-metadata")
+        )));
+    }
+
+    @Internal
+    protected abstract Property<MavenHttpClientService> getHttpClientService();
+
+    {
+        val httpClientService = getProject().getGradle().getSharedServices().registerIfAbsent(
+            MAVEN_HTTP_CLIENT_SERVICE_NAME,
+            MavenHttpClientService.class,
+            spec -> { }
+        );
+        getHttpClientService().convention(httpClientService);
+        usesService(httpClientService);
+    }
+
     private final MavenRepositoryContainerImpl repositories =
         getObjectFactory().newInstance(MavenRepositoryContainerImpl.class);
 
@@ -48,6 +116,26 @@ public abstract class AbstractRetrieveFromMaven extends AbstractRetrieveVersions
         action.execute(repositories);
     }
 
+    private final MavenRepositoryContainerImpl projectRepositories =
+        getObjectFactory().newInstance(MavenRepositoryContainerImpl.class);
+
+    /**
+     * Repositories mapped from the Maven repositories of the project by the plugin.
+     * A repository of {@link #getRepositories()} with the same URI takes precedence over them.
+     */
+    @Internal
+    public MavenRepositoryContainer getProjectRepositories() {
+        return projectRepositories;
+    }
+
+    public void projectRepositories(Action<MavenRepositoryContainer> action) {
+        action.execute(projectRepositories);
+    }
+
+    /**
+     * Repositories by their normalized URIs. If {@link #getRepositories()} have the same URI several times,
+     * the last one wins. {@link #getProjectRepositories() Project repositories} are used only for other URIs.
+     */
     @Nested
     protected abstract MapProperty<String, MavenRepository> getRepositoryMap();
 
@@ -55,13 +143,29 @@ public abstract class AbstractRetrieveFromMaven extends AbstractRetrieveVersions
         getRepositoryMap().set(getProviderFactory().provider(() -> {
             Map<String, MavenRepository> map = new LinkedHashMap<>();
             for (val repo : repositories.getRepositories().get()) {
-                val key = getFinalized(repo.getUri());
+                val key = normalizeRepositoryUri(getFinalized(repo.getUri()));
                 map.put(key, repo);
             }
+            for (val repo : projectRepositories.getRepositories().get()) {
+                val key = normalizeRepositoryUri(getFinalized(repo.getUri()));
+                map.putIfAbsent(key, repo);
+            }
             return map;
         }));
     }
 
+    final List<MavenRepositoryInfo> collectRepositoryInfos() {
+        return getRepositoryMap().get().values().stream()
+            .map(MavenRepositoryInfo::of)
+            .collect(toList());
+    }
+
+    final MavenMetadataClient createMetadataClient() {
+        val cacheDir = getMetadataCacheDirectory().getAsFile().getOrNull();
+        val cache = cacheDir != null ? new MavenMetadataCache(cacheDir.toPath()) : null;
+        return new MavenMetadataClient(getHttpClientService().get().getConnections(), cache);
+    }
+
     @Inject
     protected abstract ObjectFactory getObjectFactory();
 
@@ -0,0 +1,42 @@
+package name.remal.gradle_plugins.versions_retriever.maven;
+
+import static name.remal.gradle_plugins.versions_retriever.maven.MavenUtils.MAVEN_METADATA_FILE_NAME;
+
+import lombok.Value;
+import lombok.val;
+import org.gradle.api.GradleException;
+
+/**
+ * Maven coordinates without version. Dependency notations with a version ({@code group:name:version})
+ * are accepted too, the version is ignored.
+ */
+@Value
+class MavenDependency {
+
+    public static MavenDependency parseMavenDependency(String notation) {
+        val parts = notation.trim().split(":");
+        if (parts.length < 2 || parts[0].isEmpty() || parts[1].isEmpty()) {
+            throw new GradleException("Invalid Maven dependency notation: " + notation);
+        }
+        return new MavenDependency(parts[0], parts[1]);
+    }
+
+
+    String group;
+
+    String name;
+
+    public String getMetadataPath() {
+        return group.replace('.', '/') + '/' + name + '/' + MAVEN_METADATA_FILE_NAME;
+    }
+
+    public String getVersionMetadataPath(String version) {
+        return group.replace('.', '/') + '/' + name + '/' + version + '/' + MAVEN_METADATA_FILE_NAME;
+    }
+
+    @Override
+    public String toString() {
+        return group + ':' + name;
+    }
+
+}
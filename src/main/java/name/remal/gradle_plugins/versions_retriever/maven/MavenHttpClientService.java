@@ -0,0 +1,35 @@
+package name.remal.gradle_plugins.versions_retriever.maven;
+
+import static name.remal.gradle_plugins.toolkit.ObjectUtils.doNotInline;
+
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * HTTP connections shared by all Maven retrieval tasks of the build.
+ *
+ * <p>Register a service with {@link #MAVEN_HTTP_CLIENT_SERVICE_NAME} name before the tasks are created
+ * to configure {@link org.gradle.api.services.BuildServiceSpec#getMaxParallelUsages()}.
+ */
+public abstract class MavenHttpClientService implements BuildService<MavenHttpClientService.Params> {
+
+    public static final String MAVEN_HTTP_CLIENT_SERVICE_NAME = doNotInline("versionsRetrieverMavenHttpClient");
+
+    public interface Params extends BuildServiceParameters {
+
+        Property<Integer> getMaxConcurrentRequestsPerHost();
+
+    }
+
+
+    private final MavenHttpConnections connections = new MavenHttpConnections(
+        getParameters().getMaxConcurrentRequestsPerHost()
+            .getOrElse(MavenHttpConnections.DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST)
+    );
+
+    MavenHttpConnections getConnections() {
+        return connections;
+    }
+
+}
@@ -0,0 +1,141 @@
+package name.remal.gradle_plugins.versions_retriever.maven;
+
+import static java.lang.Math.toIntExact;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static name.remal.gradle_plugins.versions_retriever.maven.MavenUtils.CONNECT_TIMEOUT;
+import static name.remal.gradle_plugins.versions_retriever.maven.MavenUtils.READ_TIMEOUT;
+
+import com.google.common.hash.Hashing;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.val;
+
+/**
+ * Opens HTTP connections to Maven repositories and limits concurrent requests per host.
+ *
+ * <p>HTTPS connections are partitioned by {@link MavenRepositoryInfo#isTrustAllCertificates()} and credentials.
+ * Every partition has its own {@link SSLSocketFactory}, so it has its own TLS session cache,
+ * and the JVM's keep-alive cache never shares connections between partitions.
+ */
+@RequiredArgsConstructor
+class MavenHttpConnections {
+
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST = 4;
+
+
+    private final int maxConcurrentRequestsPerHost;
+
+    private final ConcurrentMap<String, SSLSocketFactory> sslSocketFactories = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Semaphore> hostSemaphores = new ConcurrentHashMap<>();
+
+    public MavenHttpConnections() {
+        this(DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST);
+    }
+
+
+    @SneakyThrows
+    public HttpURLConnection open(MavenRepositoryInfo repository, String path) {
+        val url = new URL(repository.resolve(path));
+        val connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(toIntExact(CONNECT_TIMEOUT.toMillis()));
+        connection.setReadTimeout(toIntExact(READ_TIMEOUT.toMillis()));
+        connection.setUseCaches(false);
+        connection.setInstanceFollowRedirects(true);
+
+        if (repository.getUsername() != null) {
+            connection.setRequestProperty(
+                "Authorization",
+                "Basic " + Base64.getEncoder().encodeToString(getCredentials(repository).getBytes(UTF_8))
+            );
+        }
+
+        if (connection instanceof HttpsURLConnection) {
+            val httpsConnection = (HttpsURLConnection) connection;
+            httpsConnection.setSSLSocketFactory(getSslSocketFactory(repository));
+            if (repository.isTrustAllCertificates()) {
+                httpsConnection.setHostnameVerifier((hostname, session) -> true);
+            }
+        }
+
+        return connection;
+    }
+
+    /**
+     * Executes the action while holding one of the permits for the host of the URL.
+     */
+    @SneakyThrows
+    public <T> T withHostPermit(URL url, Callable<T> action) {
+        val hostKey = url.getHost() + ':' + (url.getPort() >= 0 ? url.getPort() : url.getDefaultPort());
+        val semaphore = hostSemaphores.computeIfAbsent(hostKey, __ -> new Semaphore(maxConcurrentRequestsPerHost));
+        semaphore.acquire();
+        try {
+            return action.call();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+
+    private SSLSocketFactory getSslSocketFactory(MavenRepositoryInfo repository) {
+        val hasher = Hashing.sha256().newHasher()
+            .putBoolean(repository.isTrustAllCertificates());
+        if (repository.getUsername() != null) {
+            hasher.putString(getCredentials(repository), UTF_8);
+        }
+        val partitionKey = hasher.hash().toString();
+        return sslSocketFactories.computeIfAbsent(
+            partitionKey,
+            __ -> createSslSocketFactory(repository.isTrustAllCertificates())
+        );
+    }
+
+    @SneakyThrows
+    private static SSLSocketFactory createSslSocketFactory(boolean trustAllCertificates) {
+        val sslContext = SSLContext.getInstance("TLS");
+        if (trustAllCertificates) {
+            sslContext.init(null, new TrustManager[]{new TrustAllTrustManager()}, null);
+        } else {
+            sslContext.init(null, null, null);
+        }
+        return sslContext.getSocketFactory();
+    }
+
+    private static String getCredentials(MavenRepositoryInfo repository) {
+        return repository.getUsername() + ':' + (repository.getPassword() != null ? repository.getPassword() : "");
+    }
+
+    @SuppressWarnings("java:S4830")
+    private static class TrustAllTrustManager implements X509TrustManager {
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            // trust all
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+            // trust all
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+
+    }
+
+}
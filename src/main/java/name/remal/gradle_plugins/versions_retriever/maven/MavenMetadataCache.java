@@ -0,0 +1,153 @@
+package name.remal.gradle_plugins.versions_retriever.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.write;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static name.remal.gradle_plugins.toolkit.PathUtils.createParentDirectories;
+import static name.remal.gradle_plugins.toolkit.PathUtils.deleteRecursively;
+
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import lombok.Builder;
+import lombok.CustomLog;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.val;
+
+/**
+ * Persistent cache of downloaded Maven metadata files with their {@code ETag}/{@code Last-Modified} headers,
+ * keyed by repository URI and file path.
+ *
+ * <p>Every entry is stored as a single file with both the headers and the content, that is replaced atomically.
+ * So the cache can be shared by concurrent builds, and headers always describe the content they are stored with.
+ */
+@CustomLog
+@RequiredArgsConstructor
+class MavenMetadataCache {
+
+    private static final int FORMAT_VERSION = 1;
+
+
+    private final Path cacheDir;
+
+    @Nullable
+    public Entry get(MavenRepositoryInfo repository, String path) {
+        val entryPath = getEntryPath(repository, path);
+        if (!isRegularFile(entryPath)) {
+            return null;
+        }
+
+        try {
+            return readEntry(readAllBytes(entryPath));
+        } catch (Exception e) {
+            logger.warn("Maven metadata cache entry couldn't be read from {}: {}", entryPath, e.toString());
+            return null;
+        }
+    }
+
+    public void put(MavenRepositoryInfo repository, String path, Entry entry) {
+        val entryPath = getEntryPath(repository, path);
+        if (entry.getEtag() == null && entry.getLastModified() == null) {
+            // the response can't be revalidated
+            deleteRecursively(entryPath);
+            return;
+        }
+
+        try {
+            createParentDirectories(entryPath);
+            val tempEntryPath = entryPath.resolveSibling(entryPath.getFileName() + "." + UUID.randomUUID() + ".tmp");
+            write(tempEntryPath, writeEntry(entry));
+            move(tempEntryPath, entryPath, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (Exception e) {
+            logger.warn("Maven metadata cache entry couldn't be written to {}: {}", entryPath, e.toString());
+        }
+    }
+
+    private Path getEntryPath(MavenRepositoryInfo repository, String path) {
+        return cacheDir.resolve(getKey(repository, path) + ".entry");
+    }
+
+    private static byte[] writeEntry(Entry entry) throws IOException {
+        val bytes = new ByteArrayOutputStream(entry.getContent().length + 256);
+        try (val out = new DataOutputStream(bytes)) {
+            out.writeInt(FORMAT_VERSION);
+            writeNullableString(out, entry.getEtag());
+            writeNullableString(out, entry.getLastModified());
+            out.writeInt(entry.getContent().length);
+            out.write(entry.getContent());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Entry readEntry(byte[] bytes) throws IOException {
+        try (val in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            val formatVersion = in.readInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported format version: " + formatVersion);
+            }
+
+            val etag = readNullableString(in);
+            val lastModified = readNullableString(in);
+            val content = new byte[in.readInt()];
+            in.readFully(content);
+            if (in.read() >= 0) {
+                throw new IOException("Unexpected bytes after the content");
+            }
+
+            return Entry.builder()
+                .etag(etag)
+                .lastModified(lastModified)
+                .content(content)
+                .build();
+        }
+    }
+
+    private static void writeNullableString(DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static String getKey(MavenRepositoryInfo repository, String path) {
+        return Hashing.sha256().newHasher()
+            .putString(repository.getUri(), UTF_8)
+            .putByte((byte) '\n')
+            .putString(path, UTF_8)
+            .hash()
+            .toString();
+    }
+
+
+    @Value
+    @Builder
+    public static class Entry {
+
+        @Nullable
+        String etag;
+
+        @Nullable
+        String lastModified;
+
+        @SuppressWarnings("java:S2384")
+        byte[] content;
+
+    }
+
+}
@@ -0,0 +1,197 @@
+package name.remal.gradle_plugins.versions_retriever.maven;
+
+import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
+import static java.net.HttpURLConnection.HTTP_OK;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static name.remal.gradle_plugins.versions_retriever.maven.MavenUtils.CONNECT_TIMEOUT;
+
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.time.Duration;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import lombok.CustomLog;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.val;
+import name.remal.gradle_plugins.versions_retriever.TimeoutBudget;
+import org.gradle.api.GradleException;
+
+/**
+ * Downloads Maven metadata files over HTTP(S).
+ *
+ * <p>Connections aren't disconnected after successful requests,
+ * so they are reused by the JVM's HTTP keep-alive cache.
+ *
+ * <p>If a cache is set, conditional requests are sent for cached files,
+ * and cached content is used if the file hasn't been modified.
+ *
+ * <p>The read timeout of {@link HttpURLConnection} applies to every single read,
+ * so a server that responds slowly but steadily could exceed it many times over.
+ * That's why the connection is also disconnected once the whole request exceeds its timeout budget.
+ */
+@CustomLog
+@RequiredArgsConstructor
+class MavenMetadataClient {
+
+    private static final ScheduledThreadPoolExecutor DEADLINE_EXECUTOR = createDeadlineExecutor();
+
+
+    private final MavenHttpConnections connections;
+
+    @Nullable
+    private final MavenMetadataCache cache;
+
+    public MavenMetadataClient() {
+        this(new MavenHttpConnections(), null);
+    }
+
+
+    /**
+     * Returns the content of the file, or {@code null} if the file doesn't exist in the repository.
+     *
+     * <p>Connect and read timeouts of the request are limited by the remaining time of the budget,
+     * once a permit for the host is acquired.
+     * The request fails if it isn't completed before the budget is exhausted.
+     */
+    @Nullable
+    public byte[] download(MavenRepositoryInfo repository, String path, TimeoutBudget timeoutBudget) {
+        return download(repository, path, timeoutBudget, __ -> { });
+    }
+
+    /**
+     * The listener is called with the opened connection before the request is sent,
+     * so the request can be cancelled by {@link HttpURLConnection#disconnect()} from other threads.
+     */
+    @Nullable
+    public byte[] download(
+        MavenRepositoryInfo repository,
+        String path,
+        TimeoutBudget timeoutBudget,
+        Consumer<HttpURLConnection> connectionListener
+    ) {
+        val connection = connections.open(repository, path);
+        connectionListener.accept(connection);
+        return connections.withHostPermit(connection.getURL(), () -> {
+            timeoutBudget.checkNotExhausted();
+            val remaining = timeoutBudget.getRemaining();
+            connection.setConnectTimeout(toTimeoutMillis(
+                remaining.compareTo(CONNECT_TIMEOUT) < 0 ? remaining : CONNECT_TIMEOUT
+            ));
+            connection.setReadTimeout(toTimeoutMillis(remaining));
+
+            val deadlineExceeded = new AtomicBoolean();
+            val deadline = DEADLINE_EXECUTOR.schedule(
+                () -> {
+                    deadlineExceeded.set(true);
+                    connection.disconnect();
+                },
+                remaining.toNanos(),
+                NANOSECONDS
+            );
+            try {
+                return download(repository, path, connection);
+            } catch (Throwable e) {
+                if (deadlineExceeded.get()) {
+                    throw new GradleException(String.format(
+                        "Timeout of %s exceeded: %s",
+                        remaining,
+                        connection.getURL()
+                    ), e);
+                }
+                throw e;
+            } finally {
+                deadline.cancel(false);
+            }
+        });
+    }
+
+    @Nullable
+    @SneakyThrows
+    private byte[] download(MavenRepositoryInfo repository, String path, HttpURLConnection connection) {
+        val cachedEntry = cache != null ? cache.get(repository, path) : null;
+        try {
+            if (cachedEntry != null) {
+                if (cachedEntry.getEtag() != null) {
+                    connection.setRequestProperty("If-None-Match", cachedEntry.getEtag());
+                }
+                if (cachedEntry.getLastModified() != null) {
+                    connection.setRequestProperty("If-Modified-Since", cachedEntry.getLastModified());
+                }
+            }
+
+            val responseCode = connection.getResponseCode();
+            if (responseCode == HTTP_NOT_MODIFIED && cachedEntry != null) {
+                logger.info("Maven metadata hasn't been modified, using cached content: {}", connection.getURL());
+                return cachedEntry.getContent();
+            }
+            if (responseCode == HTTP_NOT_FOUND) {
+                discardErrorStream(connection);
+                return null;
+            }
+            if (responseCode != HTTP_OK) {
+                discardErrorStream(connection);
+                throw new IOException(String.format(
+                    "Unexpected response from %s: %d %s",
+                    connection.getURL(),
+                    responseCode,
+                    connection.getResponseMessage()
+                ));
+            }
+
+            final byte[] content;
+            try (val inputStream = connection.getInputStream()) {
+                content = ByteStreams.toByteArray(inputStream);
+            }
+
+            if (cache != null) {
+                cache.put(repository, path, MavenMetadataCache.Entry.builder()
+                    .etag(connection.getHeaderField("ETag"))
+                    .lastModified(connection.getHeaderField("Last-Modified"))
+                    .content(content)
+                    .build()
+                );
+            }
+
+            return content;
+
+        } catch (Throwable e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createDeadlineExecutor() {
+        val executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            val thread = new Thread(runnable, "maven-metadata-request-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * {@code 0} means no timeout for {@link HttpURLConnection}, so the timeout is at least one millisecond.
+     */
+    private static int toTimeoutMillis(Duration timeout) {
+        return (int) Math.max(1, Math.min(timeout.toMillis(), Integer.MAX_VALUE));
+    }
+
+    /**
+     * The connection is returned to the keep-alive cache only if the response body has been fully read.
+     */
+    @SneakyThrows
+    private static void discardErrorStream(HttpURLConnection connection) {
+        try (val errorStream = connection.getErrorStream()) {
+            if (errorStream != null) {
+                ByteStreams.exhaust(errorStream);
+            }
+        }
+    }
+
+}
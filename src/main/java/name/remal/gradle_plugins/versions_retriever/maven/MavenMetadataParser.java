@@ -0,0 +1,156 @@
+package name.remal.gradle_plugins.versions_retriever.maven;
+
+import static java.lang.Integer.parseInt;
+import static javax.xml.stream.XMLInputFactory.IS_COALESCING;
+import static javax.xml.stream.XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES;
+import static javax.xml.stream.XMLInputFactory.SUPPORT_DTD;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+import static lombok.AccessLevel.PRIVATE;
+import static name.remal.gradle_plugins.toolkit.ObjectUtils.isEmpty;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.val;
+
+/**
+ * Streaming parser of {@code maven-metadata.xml} files.
+ * Only the needed elements are read, no document tree is built.
+ */
+@NoArgsConstructor(access = PRIVATE)
+abstract class MavenMetadataParser {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+    private static final String[] VERSIONS_VERSION_PATH = {"metadata", "versioning", "versions", "version"};
+    private static final String[] LATEST_PATH = {"metadata", "versioning", "latest"};
+    private static final String[] RELEASE_PATH = {"metadata", "versioning", "release"};
+
+    private static final String[] SNAPSHOT_TIMESTAMP_PATH = {"metadata", "versioning", "snapshot", "timestamp"};
+    private static final String[] SNAPSHOT_BUILD_NUMBER_PATH = {"metadata", "versioning", "snapshot", "buildNumber"};
+
+    private static final int MAX_DEPTH = 4;
+
+
+    public static void parseMavenMetadataVersions(byte[] content, Consumer<String> versionConsumer) {
+        parseMavenMetadataVersions(new ByteArrayInputStream(content), versionConsumer);
+    }
+
+    /**
+     * Passes {@code metadata/versioning/versions/version}, {@code metadata/versioning/latest}
+     * and {@code metadata/versioning/release} values to the consumer.
+     * The same version can be passed several times.
+     */
+    @SneakyThrows
+    public static void parseMavenMetadataVersions(InputStream inputStream, Consumer<String> versionConsumer) {
+        val reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+        try {
+            val path = new String[MAX_DEPTH];
+            int depth = 0;
+            while (reader.hasNext()) {
+                val event = reader.next();
+                if (event == START_ELEMENT) {
+                    if (depth < MAX_DEPTH) {
+                        path[depth] = reader.getLocalName();
+                    }
+                    ++depth;
+
+                    if (isVersionElement(path, depth)) {
+                        val version = reader.getElementText().trim();
+                        --depth;
+                        if (!version.isEmpty()) {
+                            versionConsumer.accept(version);
+                        }
+                    }
+
+                } else if (event == END_ELEMENT) {
+                    --depth;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Returns {@code metadata/versioning/snapshot} of version-level metadata,
+     * or {@code null} if there is no timestamped snapshot build.
+     * Parsing stops as soon as both the timestamp and the build number are read.
+     */
+    @Nullable
+    @SneakyThrows
+    public static MavenSnapshotVersion parseMavenSnapshotVersion(byte[] content) {
+        val reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(content));
+        try {
+            String timestamp = null;
+            String buildNumber = null;
+            val path = new String[MAX_DEPTH];
+            int depth = 0;
+            while (reader.hasNext() && (timestamp == null || buildNumber == null)) {
+                val event = reader.next();
+                if (event == START_ELEMENT) {
+                    if (depth < MAX_DEPTH) {
+                        path[depth] = reader.getLocalName();
+                    }
+                    ++depth;
+
+                    if (matches(path, depth, SNAPSHOT_TIMESTAMP_PATH)) {
+                        timestamp = reader.getElementText().trim();
+                        --depth;
+                    } else if (matches(path, depth, SNAPSHOT_BUILD_NUMBER_PATH)) {
+                        buildNumber = reader.getElementText().trim();
+                        --depth;
+                    }
+
+                } else if (event == END_ELEMENT) {
+                    --depth;
+                }
+            }
+
+            if (isEmpty(timestamp) || isEmpty(buildNumber)) {
+                return null;
+            }
+            try {
+                return new MavenSnapshotVersion(timestamp, parseInt(buildNumber));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static boolean isVersionElement(String[] path, int depth) {
+        return matches(path, depth, VERSIONS_VERSION_PATH)
+            || matches(path, depth, LATEST_PATH)
+            || matches(path, depth, RELEASE_PATH);
+    }
+
+    private static boolean matches(String[] path, int depth, String[] expectedPath) {
+        if (depth != expectedPath.length) {
+            return false;
+        }
+        for (int i = 0; i < depth; ++i) {
+            if (!expectedPath[i].equals(path[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        val factory = XMLInputFactory.newInstance();
+        factory.setProperty(SUPPORT_DTD, false);
+        factory.setProperty(IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(IS_COALESCING, true);
+        return factory;
+    }
+
+}
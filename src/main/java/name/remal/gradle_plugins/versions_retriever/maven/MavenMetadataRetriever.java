@@ -0,0 +1,427 @@
+package name.remal.gradle_plugins.versions_retriever.maven;
+
+import static java.lang.Math.min;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static lombok.AccessLevel.PRIVATE;
+import static name.remal.gradle_plugins.versions_retriever.TimeoutBudget.startTimeoutBudget;
+import static name.remal.gradle_plugins.versions_retriever.maven.MavenMetadataParser.parseMavenMetadataVersions;
+import static name.remal.gradle_plugins.versions_retriever.maven.MavenMetadataParser.parseMavenSnapshotVersion;
+import static name.remal.gradle_plugins.versions_retriever.maven.MavenUtils.READ_TIMEOUT;
+import static name.remal.gradle_plugins.versions_retriever.maven.MavenUtils.SNAPSHOT_VERSION_SUFFIX;
+import static name.remal.gradle_plugins.versions_retriever.maven.MavenUtils.TOTAL_TIMEOUT;
+
+import java.net.HttpURLConnection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import lombok.Builder;
+import lombok.Builder.Default;
+import lombok.CustomLog;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Singular;
+import lombok.SneakyThrows;
+import lombok.val;
+import name.remal.gradle_plugins.versions_retriever.TimeoutBudget;
+import name.remal.gradle_plugins.versions_retriever.VersionInfo;
+
+/**
+ * Retrieves max versions of Maven dependencies from metadata of all repositories.
+ * Repositories are requested in parallel.
+ *
+ * <p>If the max version is a snapshot version, its latest timestamped build is retrieved
+ * from version-level metadata of this snapshot version only.
+ *
+ * <p>If mirrors hedging is enabled, all mirror repositories are raced for every dependency,
+ * and only the first valid metadata of them is used.
+ *
+ * <p>A repository that doesn't respond within the request timeout is skipped,
+ * but the retrieval fails as soon as the total timeout is exceeded.
+ */
+@Builder
+@RequiredArgsConstructor(access = PRIVATE)
+@CustomLog
+class MavenMetadataRetriever {
+
+    private static final int MAX_THREADS = 8;
+
+
+    @Singular
+    private final List<MavenRepositoryInfo> repositories;
+
+    @Default
+    private final boolean withReleases = true;
+
+    @Default
+    private final boolean withSnapshots = false;
+
+    @Default
+    private final boolean hedgeMirrors = false;
+
+    @Default
+    private final MavenMetadataClient client = new MavenMetadataClient();
+
+    @Default
+    private final Duration totalTimeout = TOTAL_TIMEOUT;
+
+    @Default
+    private final Duration requestTimeout = READ_TIMEOUT;
+
+
+    @Nullable
+    public VersionInfo retrieve(MavenDependency dependency) {
+        return retrieveAll(singletonList(dependency)).get(dependency);
+    }
+
+    /**
+     * Retrieves max versions of all dependencies at once. All requests share the same thread pool
+     * and the same HTTP keep-alive connections.
+     * Dependencies without any version found are not included in the result.
+     */
+    @SneakyThrows
+    public Map<MavenDependency, VersionInfo> retrieveAll(Collection<MavenDependency> dependencies) {
+        val requestedRepositories = new ArrayList<MavenRepositoryInfo>();
+        for (val repository : repositories) {
+            if ((withReleases && repository.isWithReleases()) || (withSnapshots && repository.isWithSnapshots())) {
+                requestedRepositories.add(repository);
+            }
+        }
+        if (requestedRepositories.isEmpty()) {
+            logger.warn("No Maven repositories to retrieve versions from");
+            return emptyMap();
+        }
+
+        val requestsCount = requestedRepositories.size() * dependencies.size();
+        if (requestsCount == 0) {
+            return emptyMap();
+        }
+
+        val snapshotRepositories = new ArrayList<MavenRepositoryInfo>();
+        if (withSnapshots) {
+            requestedRepositories.stream()
+                .filter(MavenRepositoryInfo::isWithSnapshots)
+                .forEach(snapshotRepositories::add);
+        }
+
+        val mirrors = new ArrayList<MavenRepositoryInfo>();
+        if (hedgeMirrors) {
+            requestedRepositories.stream()
+                .filter(MavenRepositoryInfo::isMirror)
+                .forEach(mirrors::add);
+            if (mirrors.size() >= 2) {
+                requestedRepositories.removeAll(mirrors);
+            } else {
+                mirrors.clear();
+            }
+        }
+
+        val timeoutBudget = startTimeoutBudget("Maven metadata retrieval", totalTimeout);
+        val executor = newFixedThreadPool(min(requestsCount, MAX_THREADS), new DaemonThreadFactory());
+        try {
+            val futures = new LinkedHashMap<MavenDependency, List<Future<VersionInfo>>>();
+            for (val dependency : dependencies) {
+                val dependencyFutures = futures.computeIfAbsent(dependency, __ -> new ArrayList<>());
+                for (val repository : requestedRepositories) {
+                    dependencyFutures.add(executor.submit(() ->
+                        retrieveFrom(repository, dependency, timeoutBudget)
+                    ));
+                }
+                if (!mirrors.isEmpty()) {
+                    val race = new MirrorsRace(dependency, mirrors.size());
+                    mirrors.forEach(mirror -> executor.submit(() -> race.request(mirror, timeoutBudget)));
+                    dependencyFutures.add(race.getResult());
+                }
+            }
+
+            Map<MavenDependency, VersionInfo> result = new LinkedHashMap<>();
+            for (val entry : futures.entrySet()) {
+                val maxVersion = getMax(entry.getValue(), timeoutBudget);
+                if (maxVersion != null) {
+                    result.put(entry.getKey(), maxVersion);
+                }
+            }
+
+            val snapshotFutures = new LinkedHashMap<MavenDependency, List<Future<MavenSnapshotVersion>>>();
+            result.forEach((dependency, version) -> {
+                if (!version.getVersion().endsWith(SNAPSHOT_VERSION_SUFFIX)) {
+                    return;
+                }
+
+                val dependencyFutures = snapshotFutures.computeIfAbsent(dependency, __ -> new ArrayList<>());
+                for (val repository : snapshotRepositories) {
+                    dependencyFutures.add(executor.submit(() ->
+                        retrieveSnapshotVersionFrom(repository, dependency, version.getVersion(), timeoutBudget)
+                    ));
+                }
+            });
+            for (val entry : snapshotFutures.entrySet()) {
+                val snapshotVersion = getMax(entry.getValue(), timeoutBudget);
+                if (snapshotVersion != null) {
+                    result.computeIfPresent(entry.getKey(), (__, version) -> VersionInfo.builder()
+                        .version(version.getVersion())
+                        .mavenSnapshotVersion(snapshotVersion.toVersion(version.getVersion()))
+                        .build()
+                    );
+                }
+            }
+
+            return result;
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Nullable
+    private VersionInfo retrieveFrom(
+        MavenRepositoryInfo repository,
+        MavenDependency dependency,
+        TimeoutBudget timeoutBudget
+    ) {
+        final byte[] content;
+        try {
+            content = client.download(
+                repository,
+                dependency.getMetadataPath(),
+                startRequestPhase(timeoutBudget, repository, dependency)
+            );
+        } catch (Exception e) {
+            logger.warn("Maven metadata of {} couldn't be downloaded from {}: {}", dependency, repository, e.toString());
+            return null;
+        }
+
+        if (content == null) {
+            logger.info("Maven metadata of {} not found in {}", dependency, repository);
+            return null;
+        }
+
+        try {
+            return getMaxVersion(repository, content);
+        } catch (Exception e) {
+            logger.warn("Invalid Maven metadata of {} in {}: {}", dependency, repository, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Only version-level metadata of the snapshot version is downloaded,
+     * so only one request per repository is sent, regardless of how many snapshot versions exist.
+     */
+    @Nullable
+    private MavenSnapshotVersion retrieveSnapshotVersionFrom(
+        MavenRepositoryInfo repository,
+        MavenDependency dependency,
+        String version,
+        TimeoutBudget timeoutBudget
+    ) {
+        final byte[] content;
+        try {
+            content = client.download(
+                repository,
+                dependency.getVersionMetadataPath(version),
+                startRequestPhase(timeoutBudget, repository, dependency)
+            );
+        } catch (Exception e) {
+            logger.warn(
+                "Maven metadata of {}:{} couldn't be downloaded from {}: {}",
+                dependency,
+                version,
+                repository,
+                e.toString()
+            );
+            return null;
+        }
+
+        if (content == null) {
+            return null;
+        }
+
+        try {
+            return parseMavenSnapshotVersion(content);
+        } catch (Exception e) {
+            logger.warn("Invalid Maven metadata of {}:{} in {}: {}", dependency, version, repository, e.toString());
+            return null;
+        }
+    }
+
+    private TimeoutBudget startRequestPhase(
+        TimeoutBudget timeoutBudget,
+        MavenRepositoryInfo repository,
+        MavenDependency dependency
+    ) {
+        return timeoutBudget.startPhase(
+            "Maven metadata request of " + dependency + " to " + repository,
+            requestTimeout
+        );
+    }
+
+    /**
+     * Fails as soon as the budget is exhausted, without waiting for requests that are still in-flight.
+     *
+     * <p>Every request logs and skips its own failures and returns {@code null},
+     * so a failed future means a bug, that is rethrown.
+     */
+    @Nullable
+    @SneakyThrows
+    private static <T extends Comparable<? super T>> T getMax(List<Future<T>> futures, TimeoutBudget timeoutBudget) {
+        T max = null;
+        for (val future : futures) {
+            T value = null;
+            while (true) {
+                timeoutBudget.checkNotExhausted();
+                try {
+                    value = future.get(timeoutBudget.getRemaining().toNanos(), NANOSECONDS);
+                    break;
+                } catch (ExecutionException e) {
+                    throw e.getCause();
+                } catch (TimeoutException e) {
+                    // the budget is checked on the next iteration
+                }
+            }
+            if (value != null && (max == null || max.compareTo(value) < 0)) {
+                max = value;
+            }
+        }
+        return max;
+    }
+
+    @Nullable
+    private VersionInfo getMaxVersion(MavenRepositoryInfo repository, byte[] content) {
+        val maxVersion = new AtomicReference<VersionInfo>();
+        parseMavenMetadataVersions(content, versionString -> {
+            if (!isIncluded(repository, versionString)) {
+                return;
+            }
+
+            val currentMaxVersion = maxVersion.get();
+            if (currentMaxVersion != null && currentMaxVersion.getVersion().equals(versionString)) {
+                return;
+            }
+
+            val version = VersionInfo.builder()
+                .version(versionString)
+                .build();
+            if (currentMaxVersion == null || currentMaxVersion.compareTo(version) < 0) {
+                maxVersion.set(version);
+            }
+        });
+        return maxVersion.get();
+    }
+
+    private boolean isIncluded(MavenRepositoryInfo repository, String version) {
+        if (version.endsWith(SNAPSHOT_VERSION_SUFFIX)) {
+            return withSnapshots && repository.isWithSnapshots();
+        } else {
+            return withReleases && repository.isWithReleases();
+        }
+    }
+
+
+    /**
+     * Requests metadata from all mirrors at once. The first valid metadata wins,
+     * and connections of other in-flight requests are disconnected.
+     */
+    private class MirrorsRace {
+
+        private final MavenDependency dependency;
+
+        private final AtomicInteger remainingRequests;
+
+        @Getter
+        private final CompletableFuture<VersionInfo> result = new CompletableFuture<>();
+
+        private final Set<HttpURLConnection> connections = ConcurrentHashMap.newKeySet();
+
+        MirrorsRace(MavenDependency dependency, int mirrorsCount) {
+            this.dependency = dependency;
+            this.remainingRequests = new AtomicInteger(mirrorsCount);
+        }
+
+        public void request(MavenRepositoryInfo mirror, TimeoutBudget timeoutBudget) {
+            try {
+                if (!result.isDone()) {
+                    requestImpl(mirror, timeoutBudget);
+                }
+            } finally {
+                if (remainingRequests.decrementAndGet() == 0) {
+                    result.complete(null);
+                }
+            }
+        }
+
+        private void requestImpl(MavenRepositoryInfo mirror, TimeoutBudget timeoutBudget) {
+            val ownConnection = new AtomicReference<HttpURLConnection>();
+            final byte[] content;
+            try {
+                val requestBudget = startRequestPhase(timeoutBudget, mirror, dependency);
+                val metadataPath = dependency.getMetadataPath();
+                content = client.download(mirror, metadataPath, requestBudget, connection -> {
+                    ownConnection.set(connection);
+                    connections.add(connection);
+                    if (result.isDone()) {
+                        connection.disconnect();
+                    }
+                });
+            } catch (Exception e) {
+                if (!result.isDone()) {
+                    logger.warn("Maven metadata of {} couldn't be downloaded from {}: {}", dependency, mirror, e.toString());
+                }
+                return;
+            } finally {
+                val connection = ownConnection.get();
+                if (connection != null) {
+                    connections.remove(connection);
+                }
+            }
+
+            if (content == null) {
+                logger.info("Maven metadata of {} not found in {}", dependency, mirror);
+                return;
+            }
+
+            final VersionInfo version;
+            try {
+                version = getMaxVersion(mirror, content);
+            } catch (Exception e) {
+                logger.warn("Invalid Maven metadata of {} in {}: {}", dependency, mirror, e.toString());
+                return;
+            }
+
+            if (result.complete(version)) {
+                logger.info("Mirror {} was the first to respond with Maven metadata of {}", mirror, dependency);
+                connections.forEach(HttpURLConnection::disconnect);
+            }
+        }
+
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            val thread = new Thread(runnable, "maven-metadata-retriever-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
@@ -37,4 +37,15 @@ public abstract class MavenRepository {
         getWithSnapshots().convention(true);
     }
 
+    /**
+     * Whether the repository is a mirror, that serves the same metadata as other mirror repositories.
+     * See {@link AbstractRetrieveFromMaven#getHedgeMirrors()}.
+     */
+    @Input
+    public abstract Property<Boolean> getMirror();
+
+    {
+        getMirror().convention(false);
+    }
+
 }
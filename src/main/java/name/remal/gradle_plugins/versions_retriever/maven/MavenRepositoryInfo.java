@@ -0,0 +1,52 @@
+package name.remal.gradle_plugins.versions_retriever.maven;
+
+import javax.annotation.Nullable;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Immutable snapshot of {@link MavenRepository} settings, that can be used from any thread.
+ */
+@Value
+@Builder
+class MavenRepositoryInfo {
+
+    public static MavenRepositoryInfo of(MavenRepository repository) {
+        return MavenRepositoryInfo.builder()
+            .uri(repository.getUri().get())
+            .trustAllCertificates(repository.getTrustAllCertificates().get())
+            .username(repository.getUsername().getOrNull())
+            .password(repository.getPassword().getOrNull())
+            .withReleases(repository.getWithReleases().get())
+            .withSnapshots(repository.getWithSnapshots().get())
+            .mirror(repository.getMirror().get())
+            .build();
+    }
+
+
+    String uri;
+
+    boolean trustAllCertificates;
+
+    @Nullable
+    String username;
+
+    @Nullable
+    String password;
+
+    boolean withReleases;
+
+    boolean withSnapshots;
+
+    boolean mirror;
+
+    public String resolve(String path) {
+        return uri.endsWith("/") ? uri + path : uri + '/' + path;
+    }
+
+    @Override
+    public String toString() {
+        return uri;
+    }
+
+}
@@ -0,0 +1,43 @@
+package name.remal.gradle_plugins.versions_retriever.maven;
+
+import static name.remal.gradle_plugins.versions_retriever.maven.MavenUtils.SNAPSHOT_VERSION_SUFFIX;
+
+import java.util.Comparator;
+import lombok.Value;
+
+/**
+ * Timestamp and build number of a deployed snapshot build,
+ * from {@code metadata/versioning/snapshot} of version-level metadata.
+ */
+@Value
+class MavenSnapshotVersion implements Comparable<MavenSnapshotVersion> {
+
+    private static final Comparator<MavenSnapshotVersion> COMPARATOR = Comparator
+        .comparing(MavenSnapshotVersion::getTimestamp)
+        .thenComparingInt(MavenSnapshotVersion::getBuildNumber);
+
+
+    /**
+     * In {@code yyyyMMdd.HHmmss} format, so timestamps can be compared as strings.
+     */
+    String timestamp;
+
+    int buildNumber;
+
+    /**
+     * Returns the timestamped version, for example {@code 1.0-20240101.123456-5} for {@code 1.0-SNAPSHOT}.
+     */
+    public String toVersion(String snapshotVersion) {
+        String baseVersion = snapshotVersion;
+        if (baseVersion.endsWith(SNAPSHOT_VERSION_SUFFIX)) {
+            baseVersion = baseVersion.substring(0, baseVersion.length() - SNAPSHOT_VERSION_SUFFIX.length());
+        }
+        return baseVersion + '-' + timestamp + '-' + buildNumber;
+    }
+
+    @Override
+    public int compareTo(MavenSnapshotVersion other) {
+        return COMPARATOR.compare(this, other);
+    }
+
+}
@@ -0,0 +1,61 @@
+package name.remal.gradle_plugins.versions_retriever.maven;
+
+import static java.util.Locale.ROOT;
+import static lombok.AccessLevel.PRIVATE;
+import static name.remal.gradle_plugins.toolkit.ObjectUtils.defaultValue;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import lombok.NoArgsConstructor;
+import lombok.val;
+
+@NoArgsConstructor(access = PRIVATE)
+abstract class MavenUtils {
+
+    public static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
+
+    public static final Duration READ_TIMEOUT = Duration.ofMinutes(1);
+
+    public static final Duration TOTAL_TIMEOUT = Duration.ofMinutes(5);
+
+    public static final String MAVEN_METADATA_FILE_NAME = "maven-metadata.xml";
+
+    public static final String SNAPSHOT_VERSION_SUFFIX = "-SNAPSHOT";
+
+
+    /**
+     * Normalizes the repository URI, so different spellings of the same repository are equal:
+     * scheme and host are lower-cased, default ports are removed, the path is normalized and ends with {@code /}.
+     */
+    public static String normalizeRepositoryUri(String uri) {
+        final URI parsedUri;
+        try {
+            parsedUri = new URI(uri.trim()).normalize();
+        } catch (URISyntaxException e) {
+            return uri;
+        }
+
+        if (parsedUri.isOpaque() || parsedUri.getScheme() == null) {
+            return parsedUri.toString();
+        }
+
+        val scheme = parsedUri.getScheme().toLowerCase(ROOT);
+        val host = parsedUri.getHost() != null ? parsedUri.getHost().toLowerCase(ROOT) : null;
+        int port = parsedUri.getPort();
+        if ((port == 80 && scheme.equals("http")) || (port == 443 && scheme.equals("https"))) {
+            port = -1;
+        }
+        String path = defaultValue(parsedUri.getPath(), "").replaceAll("/{2,}", "/");
+        if (!path.endsWith("/")) {
+            path += "/";
+        }
+
+        try {
+            return new URI(scheme, parsedUri.getUserInfo(), host, port, path, parsedUri.getQuery(), null).toString();
+        } catch (URISyntaxException e) {
+            return parsedUri.toString();
+        }
+    }
+
+}
@@ -1,6 +1,20 @@
 package name.remal.gradle_plugins.versions_retriever.maven;
 
+import static java.nio.file.Files.write;
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toCollection;
+import static name.remal.gradle_plugins.versions_retriever.VersionInfo.storeVersionInfos;
+import static name.remal.gradle_plugins.versions_retriever.maven.MavenDependency.parseMavenDependency;
+
 import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.SneakyThrows;
+import lombok.val;
+import name.remal.gradle_plugins.versions_retriever.VersionInfo;
+import org.gradle.api.GradleException;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.UntrackedTask;
@@ -8,12 +22,62 @@ import org.gradle.api.tasks.UntrackedTask;
 @UntrackedTask(because = "This task should always fetch from remote Maven repository")
 public abstract class RetrieveVersionsFromMaven extends AbstractRetrieveFromMaven {
 
+    /**
+     * The dependency to retrieve the version of.
+     * The result properties file has {@code version} property.
+     */
     @Input
+    @org.gradle.api.tasks.Optional
     public abstract Property<String> getDependency();
 
+    /**
+     * Dependencies to retrieve versions of, in a single task.
+     * The result properties file has {@code <group>:<name>.version} property for every found dependency.
+     */
+    @Input
+    @org.gradle.api.tasks.Optional
+    public abstract ListProperty<String> getDependencies();
+
     @Override
+    @SneakyThrows
     protected void retrieveImpl(File resultPropertiesFile) {
+        val dependencyNotation = getDependency().getOrNull();
+        val dependencyNotations = getDependencies().getOrElse(emptyList());
+        if (dependencyNotation == null && dependencyNotations.isEmpty()) {
+            throw new GradleException("Either `dependency` or `dependencies` must be set for task " + getPath());
+        } else if (dependencyNotation != null && !dependencyNotations.isEmpty()) {
+            throw new GradleException("Only one of `dependency` or `dependencies` can be set for task " + getPath());
+        }
+
+        val retriever = MavenMetadataRetriever.builder()
+            .repositories(collectRepositoryInfos())
+            .withReleases(getWithReleases().get())
+            .withSnapshots(getWithSnapshots().get())
+            .hedgeMirrors(getHedgeMirrors().get())
+            .client(createMetadataClient())
+            .totalTimeout(getTotalRequestsTimeout().get())
+            .requestTimeout(getRequestTimeout().get())
+            .build();
+
+        if (dependencyNotation != null) {
+            val version = retriever.retrieve(parseMavenDependency(dependencyNotation));
+            if (version == null) {
+                write(resultPropertiesFile.toPath(), new byte[0]);
+                return;
+            }
+
+            version.store(resultPropertiesFile);
+            return;
+        }
 
+        val dependencies = dependencyNotations.stream()
+            .map(MavenDependency::parseMavenDependency)
+            .collect(toCollection(LinkedHashSet::new));
+        Map<String, VersionInfo> versions = new TreeMap<>();
+        retriever.retrieveAll(dependencies).forEach((dependency, version) ->
+            versions.put(dependency.toString(), version)
+        );
+        storeVersionInfos(versions, resultPropertiesFile);
     }
 
 }
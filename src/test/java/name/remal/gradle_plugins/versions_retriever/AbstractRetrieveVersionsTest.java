@@ -0,0 +1,31 @@
+package name.remal.gradle_plugins.versions_retriever;
+
+import static name.remal.gradle_plugins.versions_retriever.AbstractRetrieveVersions.formatAge;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class AbstractRetrieveVersionsTest {
+
+    @Test
+    void formatAgeOmitsLeadingZeroUnits() {
+        assertThat(formatAge(Duration.ofSeconds(5))).isEqualTo("5s");
+        assertThat(formatAge(Duration.ofMinutes(2).plusSeconds(5))).isEqualTo("2m 5s");
+        assertThat(formatAge(Duration.ofHours(1).plusSeconds(5))).isEqualTo("1h 0m 5s");
+        assertThat(formatAge(Duration.ofDays(2).plusMinutes(3))).isEqualTo("48h 3m 0s");
+    }
+
+    @Test
+    void formatAgeIgnoresFractionsOfSeconds() {
+        assertThat(formatAge(Duration.ofMillis(1_999))).isEqualTo("1s");
+    }
+
+    @Test
+    void formatAgeFormatsZeroAndNegativeAgesAsZeroSeconds() {
+        assertThat(formatAge(Duration.ZERO)).isEqualTo("0s");
+        assertThat(formatAge(Duration.ofMillis(300))).isEqualTo("0s");
+        assertThat(formatAge(Duration.ofSeconds(-10))).isEqualTo("0s");
+    }
+
+}
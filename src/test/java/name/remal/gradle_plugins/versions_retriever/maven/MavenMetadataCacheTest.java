@@ -0,0 +1,124 @@
+package name.remal.gradle_plugins.versions_retriever.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.list;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.write;
+import static java.util.Arrays.copyOf;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.List;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MavenMetadataCacheTest {
+
+    static final MavenRepositoryInfo REPOSITORY = MavenRepositoryInfo.builder()
+        .uri("https://repo.example.com/maven2/")
+        .withReleases(true)
+        .build();
+
+    static final String PATH = "test/group/test-name/maven-metadata.xml";
+
+    @TempDir
+    Path cacheDir;
+
+    @Test
+    void entryIsStored() {
+        val cache = new MavenMetadataCache(cacheDir);
+        cache.put(REPOSITORY, PATH, MavenMetadataCache.Entry.builder()
+            .etag("\"etag\"")
+            .lastModified("Mon, 01 Jan 2024 00:00:00 GMT")
+            .content("content".getBytes(UTF_8))
+            .build()
+        );
+
+        val entry = new MavenMetadataCache(cacheDir).get(REPOSITORY, PATH);
+        assertThat(entry).isNotNull();
+        assertThat(entry.getEtag()).isEqualTo("\"etag\"");
+        assertThat(entry.getLastModified()).isEqualTo("Mon, 01 Jan 2024 00:00:00 GMT");
+        assertThat(entry.getContent()).asString(UTF_8).isEqualTo("content");
+
+        assertThat(new MavenMetadataCache(cacheDir).get(REPOSITORY, "other/" + PATH)).isNull();
+        assertThat(getCacheFileNames())
+            .hasSize(1)
+            .noneMatch(name -> name.endsWith(".tmp"));
+    }
+
+    @Test
+    void entryIsReplaced() {
+        val cache = new MavenMetadataCache(cacheDir);
+        cache.put(REPOSITORY, PATH, MavenMetadataCache.Entry.builder()
+            .etag("\"etag1\"")
+            .content("content1".getBytes(UTF_8))
+            .build()
+        );
+        cache.put(REPOSITORY, PATH, MavenMetadataCache.Entry.builder()
+            .etag("\"etag2\"")
+            .content("content2".getBytes(UTF_8))
+            .build()
+        );
+
+        val entry = cache.get(REPOSITORY, PATH);
+        assertThat(entry).isNotNull();
+        assertThat(entry.getEtag()).isEqualTo("\"etag2\"");
+        assertThat(entry.getLastModified()).isNull();
+        assertThat(entry.getContent()).asString(UTF_8).isEqualTo("content2");
+
+        assertThat(getCacheFileNames())
+            .hasSize(1)
+            .noneMatch(name -> name.endsWith(".tmp"));
+    }
+
+    @Test
+    void entryWithoutValidatorsInvalidatesPreviousEntry() {
+        val cache = new MavenMetadataCache(cacheDir);
+        cache.put(REPOSITORY, PATH, MavenMetadataCache.Entry.builder()
+            .etag("\"etag\"")
+            .content("content1".getBytes(UTF_8))
+            .build()
+        );
+        cache.put(REPOSITORY, PATH, MavenMetadataCache.Entry.builder()
+            .content("content2".getBytes(UTF_8))
+            .build()
+        );
+
+        assertThat(cache.get(REPOSITORY, PATH)).isNull();
+    }
+
+    @Test
+    void corruptedEntryIsIgnored() {
+        val cache = new MavenMetadataCache(cacheDir);
+        cache.put(REPOSITORY, PATH, MavenMetadataCache.Entry.builder()
+            .etag("\"etag\"")
+            .content("content".getBytes(UTF_8))
+            .build()
+        );
+        val entryFile = cacheDir.resolve(getCacheFileNames().get(0));
+        truncateFile(entryFile);
+
+        assertThat(cache.get(REPOSITORY, PATH)).isNull();
+    }
+
+
+    @SneakyThrows
+    private static void truncateFile(Path file) {
+        val bytes = readAllBytes(file);
+        write(file, copyOf(bytes, bytes.length - 1));
+    }
+
+    @SneakyThrows
+    private List<String> getCacheFileNames() {
+        try (val files = list(cacheDir)) {
+            return files
+                .map(Path::getFileName)
+                .map(Path::toString)
+                .collect(toList());
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package name.remal.gradle_plugins.versions_retriever.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static name.remal.gradle_plugins.versions_retriever.maven.MavenMetadataParser.parseMavenMetadataVersions;
+import static name.remal.gradle_plugins.versions_retriever.maven.MavenMetadataParser.parseMavenSnapshotVersion;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+class MavenMetadataParserTest {
+
+    @Test
+    void versionsLatestAndRelease() {
+        val versions = parseVersions(
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<metadata>\n"
+                + "  <groupId>test.group</groupId>\n"
+                + "  <artifactId>test-name</artifactId>\n"
+                + "  <version>0.1</version>\n"
+                + "  <versioning>\n"
+                + "    <latest>3.0-SNAPSHOT</latest>\n"
+                + "    <release>2.0</release>\n"
+                + "    <versions>\n"
+                + "      <version>1.0</version>\n"
+                + "      <version> 2.0 </version>\n"
+                + "      <version></version>\n"
+                + "    </versions>\n"
+                + "    <lastUpdated>20240101123456</lastUpdated>\n"
+                + "  </versioning>\n"
+                + "</metadata>\n"
+        );
+
+        assertThat(versions).containsExactly("3.0-SNAPSHOT", "2.0", "1.0", "2.0");
+    }
+
+    @Test
+    void versionElementsOutsideOfVersionsAreIgnored() {
+        val versions = parseVersions(
+            "<metadata>"
+                + "<plugins><plugin><version>9.0</version></plugin></plugins>"
+                + "<versioning>"
+                + "<snapshotVersions><snapshotVersion><version>8.0</version></snapshotVersion></snapshotVersions>"
+                + "<versions><version>1.0</version><version><![CDATA[1.]]>1</version></versions>"
+                + "</versioning>"
+                + "<deep><metadata><versioning><versions><version>7.0</version></versions></versioning></metadata>"
+                + "</deep>"
+                + "</metadata>"
+        );
+
+        assertThat(versions).containsExactly("1.0", "1.1");
+    }
+
+    @Test
+    void dtdIsIgnored() {
+        val versions = parseVersions(
+            "<?xml version=\"1.0\"?>\n"
+                + "<!DOCTYPE metadata [<!ENTITY ext SYSTEM \"file:///etc/hostname\">]>\n"
+                + "<metadata><versioning><versions><version>1.0</version></versions></versioning></metadata>"
+        );
+
+        assertThat(versions).containsExactly("1.0");
+    }
+
+    @Test
+    void snapshotVersion() {
+        val snapshotVersion = parseMavenSnapshotVersion((
+            "<metadata>"
+                + "<version>1.0-SNAPSHOT</version>"
+                + "<versioning>"
+                + "<snapshot><timestamp>20240101.123456</timestamp><buildNumber>5</buildNumber></snapshot>"
+                + "<snapshotVersions><snapshotVersion><value>1.0-20240101.123456-5</value></snapshotVersion>"
+                + "</snapshotVersions>"
+                + "</versioning>"
+                + "</metadata>"
+        ).getBytes(UTF_8));
+
+        assertThat(snapshotVersion).isEqualTo(new MavenSnapshotVersion("20240101.123456", 5));
+        assertThat(snapshotVersion.toVersion("1.0-SNAPSHOT")).isEqualTo("1.0-20240101.123456-5");
+    }
+
+    @Test
+    void snapshotVersionWithoutBuildNumber() {
+        val snapshotVersion = parseMavenSnapshotVersion((
+            "<metadata>"
+                + "<versioning><snapshot><timestamp>20240101.123456</timestamp></snapshot></versioning>"
+                + "</metadata>"
+        ).getBytes(UTF_8));
+
+        assertThat(snapshotVersion).isNull();
+    }
+
+    @Test
+    void snapshotVersionWithInvalidBuildNumber() {
+        val snapshotVersion = parseMavenSnapshotVersion((
+            "<metadata>"
+                + "<versioning><snapshot><timestamp>20240101.123456</timestamp><buildNumber>x</buildNumber></snapshot>"
+                + "</versioning>"
+                + "</metadata>"
+        ).getBytes(UTF_8));
+
+        assertThat(snapshotVersion).isNull();
+    }
+
+
+    private static List<String> parseVersions(String content) {
+        List<String> versions = new ArrayList<>();
+        parseMavenMetadataVersions(content.getBytes(UTF_8), versions::add);
+        return versions;
+    }
+
+}
@@ -0,0 +1,52 @@
+package name.remal.gradle_plugins.versions_retriever.maven;
+
+import static name.remal.gradle_plugins.versions_retriever.maven.MavenUtils.normalizeRepositoryUri;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class MavenUtilsTest {
+
+    @Test
+    void normalizeRepositoryUriLowerCasesSchemeAndHost() {
+        assertThat(normalizeRepositoryUri("HTTPS://Repo.Example.COM/Maven2"))
+            .isEqualTo("https://repo.example.com/Maven2/");
+    }
+
+    @Test
+    void normalizeRepositoryUriRemovesDefaultPorts() {
+        assertThat(normalizeRepositoryUri("https://repo.example.com:443/maven2/"))
+            .isEqualTo("https://repo.example.com/maven2/");
+        assertThat(normalizeRepositoryUri("http://repo.example.com:80/maven2/"))
+            .isEqualTo("http://repo.example.com/maven2/");
+        assertThat(normalizeRepositoryUri("https://repo.example.com:80/maven2/"))
+            .isEqualTo("https://repo.example.com:80/maven2/");
+    }
+
+    @Test
+    void normalizeRepositoryUriNormalizesPath() {
+        assertThat(normalizeRepositoryUri(" https://repo.example.com//maven2/./releases/../snapshots "))
+            .isEqualTo("https://repo.example.com/maven2/snapshots/");
+        assertThat(normalizeRepositoryUri("https://repo.example.com"))
+            .isEqualTo("https://repo.example.com/");
+    }
+
+    @Test
+    void normalizeRepositoryUriKeepsUserInfoAndQuery() {
+        assertThat(normalizeRepositoryUri("https://user@repo.example.com/maven2?token=abc#fragment"))
+            .isEqualTo("https://user@repo.example.com/maven2/?token=abc");
+    }
+
+    @Test
+    void differentSpellingsAreNormalizedToTheSameUri() {
+        assertThat(normalizeRepositoryUri("https://repo.example.com/maven2"))
+            .isEqualTo(normalizeRepositoryUri("HTTPS://REPO.example.com:443//maven2/"));
+    }
+
+    @Test
+    void invalidUriIsReturnedAsIs() {
+        assertThat(normalizeRepositoryUri("https://repo example com/maven2"))
+            .isEqualTo("https://repo example com/maven2");
+    }
+
+}